@@ -0,0 +1,69 @@
+package chess.bench;
+
+import chess.board.Position;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// check detection for both kings and for every legal move of the side to move
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckDetectionBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    private Position[] positions;
+    private int[][] kings;
+    private Move[][] moves;
+
+    @Setup
+    public void setup() {
+        positions = FenCorpus.positions(phase);
+        kings = new int[positions.length][];
+        moves = new Move[positions.length][];
+
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            int[] white = position.findPiece(Piece.Type.KING, Piece.Color.WHITE);
+            int[] black = position.findPiece(Piece.Type.KING, Piece.Color.BLACK);
+            kings[i] = new int[]{white[0], white[1], black[0], black[1]};
+
+            List<Move> legalMoves = LegalMoves.getAllLegalMoves(position).getLegalMoves();
+            moves[i] = legalMoves.toArray(new Move[0]);
+        }
+    }
+
+    @Benchmark
+    public void isCheck(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            blackhole.consume(LegalMoves.isCheck(kings[i][0], kings[i][1], Piece.Color.WHITE, positions[i]));
+            blackhole.consume(LegalMoves.isCheck(kings[i][2], kings[i][3], Piece.Color.BLACK, positions[i]));
+        }
+    }
+
+    @Benchmark
+    public void isCheckAfterMove(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            Piece.Color color = position.getTurn();
+            int offset = color == Piece.Color.WHITE ? 0 : 2;
+            for (Move move : moves[i]) {
+                // a king move takes the king with it
+                boolean kingMove = move.fromX == kings[i][offset] && move.fromY == kings[i][offset + 1];
+                int kingX = kingMove ? move.toX : kings[i][offset];
+                int kingY = kingMove ? move.toY : kings[i][offset + 1];
+                blackhole.consume(LegalMoves.isCheckAfterMove(kingX, kingY, color, move, position));
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package chess.bench;
+
+import chess.board.Position;
+import chess.engine.Evaluation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// static evaluation of every corpus position, after the first round the pawn structure comes from the pawn hash
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    private Position[] positions;
+    private Evaluation evaluation;
+
+    @Setup
+    public void setup() {
+        positions = FenCorpus.positions(phase);
+        evaluation = new Evaluation();
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (Position position : positions) {
+            blackhole.consume(evaluation.evaluate(position));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package chess.bench;
+
+import chess.board.Fen;
+import chess.board.Position;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// fen parsing and writing, Board.loadFen and Board.getFen delegate to the position
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FenBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    private String[] fens;
+    private byte[][] fenBytes;
+    private Position[] positions;
+    private Position target;
+
+    @Setup
+    public void setup() {
+        fens = FenCorpus.fens(phase);
+        fenBytes = new byte[fens.length][];
+        for (int i = 0; i < fens.length; i++) {
+            fenBytes[i] = fens[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        positions = FenCorpus.positions(phase);
+        target = new Position(8);
+    }
+
+    @Benchmark
+    public void loadFen(Blackhole blackhole) {
+        for (String fen : fens) {
+            target.loadFen(fen);
+            blackhole.consume(target);
+        }
+    }
+
+    @Benchmark
+    public void loadFenBytes(Blackhole blackhole) {
+        for (byte[] fen : fenBytes) {
+            Fen.load(target, fen, 0, fen.length);
+            blackhole.consume(target);
+        }
+    }
+
+    @Benchmark
+    public void getFen(Blackhole blackhole) {
+        for (Position position : positions) {
+            blackhole.consume(position.getFen());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package chess.bench;
+
+import chess.board.Position;
+
+// fixed set of positions the benchmarks run over, grouped by game phase
+public final class FenCorpus {
+    public static final String[] OPENING = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "rnbqkb1r/pppp1ppp/5n2/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+            "r1bqkbnr/pppp1ppp/2n5/1B2p3/4P3/5N2/PPPP1PPP/RNBQK2R b KQkq - 3 3",
+            "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/8/PPP2PPP/RNBQKB1R w KQkq - 1 5"
+    };
+
+    public static final String[] MIDDLEGAME = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N2N2/PP2BPPP/R1BQ1RK1 w - - 0 9",
+            "2rq1rk1/pb1nbppp/1p2pn2/2pp4/2PP4/1PN1PN2/PB2BPPP/R2Q1RK1 w - - 0 11"
+    };
+
+    public static final String[] ENDGAME = {
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "8/8/4k3/8/2p5/8/B2K4/8 w - - 0 1",
+            "8/5pk1/6p1/8/3R4/6PP/5PK1/1r6 w - - 0 40",
+            "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1"
+    };
+
+    private FenCorpus() {
+    }
+
+    // fens of the phase, OPENING, MIDDLEGAME or ENDGAME
+    public static String[] fens(String phase) {
+        switch (phase) {
+            case "OPENING":
+                return OPENING;
+            case "MIDDLEGAME":
+                return MIDDLEGAME;
+            case "ENDGAME":
+                return ENDGAME;
+            default:
+                throw new IllegalArgumentException("unknown phase " + phase);
+        }
+    }
+
+    public static Position[] positions(String phase) {
+        String[] fens = fens(phase);
+        Position[] positions = new Position[fens.length];
+        for (int i = 0; i < fens.length; i++) {
+            positions[i] = new Position(8);
+            positions[i].loadFen(fens[i]);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,40 @@
+package chess.bench;
+
+import chess.board.Position;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// the game status test Board runs after every move, for the side to move of every corpus position
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MateDetectionBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    private Position[] positions;
+
+    @Setup
+    public void setup() {
+        positions = FenCorpus.positions(phase);
+    }
+
+    @Benchmark
+    public void isCheckMate(Blackhole blackhole) {
+        for (Position position : positions) {
+            blackhole.consume(position.isCheckMate(position.getTurn()));
+        }
+    }
+
+    @Benchmark
+    public void status(Blackhole blackhole) {
+        for (Position position : positions) {
+            blackhole.consume(position.getStatus());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package chess.bench;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// legal moves of every piece of one type of the side to move, over all corpus positions of a phase
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+    public String pieceType;
+
+    private Position[] positions;
+    // for every position the x, y pairs of the pieces to generate moves for
+    private int[][] squares;
+    private final int[] buffer = new int[Move.MAX_MOVES];
+
+    @Setup
+    public void setup() {
+        positions = FenCorpus.positions(phase);
+        squares = new int[positions.length][];
+        Piece.Type type = Piece.Type.valueOf(pieceType);
+
+        for (int i = 0; i < positions.length; i++) {
+            List<Integer> found = new ArrayList<>();
+            for (int x = 0; x < 8; x++) {
+                for (int y = 0; y < 8; y++) {
+                    Piece piece = positions[i].getPiece(x, y);
+                    if (piece.type == type && piece.color == positions[i].getTurn()) {
+                        found.add(x);
+                        found.add(y);
+                    }
+                }
+            }
+            squares[i] = found.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    @Benchmark
+    public void legalMoves(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            int[] pieceSquares = squares[i];
+            for (int j = 0; j < pieceSquares.length; j += 2) {
+                Piece piece = position.getPiece(pieceSquares[j], pieceSquares[j + 1]);
+                blackhole.consume(LegalMoves.getLegalMoves(piece, pieceSquares[j], pieceSquares[j + 1], position));
+            }
+        }
+    }
+
+    @Benchmark
+    public void bitboardMoves(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            int[] pieceSquares = squares[i];
+            for (int j = 0; j < pieceSquares.length; j += 2) {
+                Piece piece = position.getPiece(pieceSquares[j], pieceSquares[j + 1]);
+                blackhole.consume(BitboardMoves.getLegalMoves(piece, pieceSquares[j], pieceSquares[j + 1], position));
+            }
+        }
+    }
+
+    @Benchmark
+    public void bitboardMovesEncoded(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            int[] pieceSquares = squares[i];
+            for (int j = 0; j < pieceSquares.length; j += 2) {
+                blackhole.consume(BitboardMoves.generate(position, pieceSquares[j + 1] * 8 + pieceSquares[j], buffer));
+            }
+        }
+    }
+}
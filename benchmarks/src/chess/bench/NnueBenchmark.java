@@ -0,0 +1,73 @@
+package chess.bench;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.engine.nnue.Network;
+import chess.engine.nnue.NnueEvaluation;
+import chess.engine.nnue.NnueKernels;
+import chess.piece.Move;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// network evaluation of the corpus positions with the scalar kernels and with the Vector API kernels
+// the weights are random, only the speed is of interest; VECTOR falls back to scalar unless the benchmark jvm runs
+// with --add-modules jdk.incubator.vector, the kernel name in the setup output shows which one is used
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NnueBenchmark {
+    @Param({"SCALAR", "VECTOR"})
+    public String kernels;
+
+    @Param({"256"})
+    public int hiddenSize;
+
+    private Position[] positions;
+    private NnueEvaluation[] evaluations;
+    private int[][] moves;
+    private int[] moveCounts;
+
+    @Setup
+    public void setup() {
+        Network network = Network.random(hiddenSize, 1);
+        NnueKernels selected = kernels.equals("VECTOR") ? NnueKernels.best() : NnueKernels.scalar();
+        System.out.println("nnue kernels: " + selected.getName());
+
+        positions = FenCorpus.positions("MIDDLEGAME");
+        evaluations = new NnueEvaluation[positions.length];
+        moves = new int[positions.length][Move.MAX_MOVES];
+        moveCounts = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            evaluations[i] = new NnueEvaluation(network, selected);
+            evaluations[i].attach(positions[i]);
+            moveCounts[i] = BitboardMoves.generate(positions[i], moves[i]);
+        }
+    }
+
+    // output layer only, the accumulators are already up to date
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            blackhole.consume(evaluations[i].evaluate(positions[i]));
+        }
+    }
+
+    // every legal move made, evaluated and unmade, as in the leaves of a search
+    @Benchmark
+    public void makeEvaluateUnmake(Blackhole blackhole) {
+        for (int i = 0; i < positions.length; i++) {
+            Position position = positions[i];
+            int[] positionMoves = moves[i];
+            for (int j = 0; j < moveCounts[i]; j++) {
+                position.makeMove(positionMoves[j]);
+                blackhole.consume(evaluations[i].evaluate(position));
+                position.unmakeMove(positionMoves[j]);
+            }
+        }
+    }
+}
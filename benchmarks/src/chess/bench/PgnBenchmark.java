@@ -0,0 +1,81 @@
+package chess.bench;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Fen;
+import chess.board.GameStatus;
+import chess.board.Position;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+import chess.pgn.PgnReplay;
+import chess.pgn.PgnWriter;
+import chess.piece.Move;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// games per second of reading a PGN file and replaying its san moves, the file holds random games written in setup
+// compare the threads parameter to see how the replay scales, read only measures splitting the file into games
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PgnBenchmark {
+    private static final int GAMES = 2000;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("games", ".pgn");
+        Random random = new Random(1);
+        Position position = new Position(8);
+        int[] moves = new int[Move.MAX_MOVES];
+        try (PgnWriter writer = PgnWriter.create(file)) {
+            for (int i = 0; i < GAMES; i++) {
+                PgnGame game = new PgnGame();
+                game.setTag("Event", "Random " + i);
+                position.loadFen(Fen.START);
+                for (int ply = 0; ply < 160 && position.getStatus() == GameStatus.ONGOING; ply++) {
+                    int move = moves[random.nextInt(BitboardMoves.generate(position, moves))];
+                    position.makeMove(move);
+                    game.addMove(move);
+                }
+                writer.write(game);
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public void read(Blackhole blackhole) throws IOException {
+        try (PgnReader reader = PgnReader.open(file)) {
+            PgnGame game;
+            while ((game = reader.next()) != null) {
+                blackhole.consume(game);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public void replay(Blackhole blackhole) throws IOException {
+        try (PgnReader reader = PgnReader.open(file)) {
+            blackhole.consume(new PgnReplay(threads).replay(reader, null));
+        }
+    }
+}
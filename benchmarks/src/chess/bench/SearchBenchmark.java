@@ -0,0 +1,51 @@
+package chess.bench;
+
+import chess.board.Position;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// time to reach a fixed depth for every corpus position, each search starts with an empty transposition table
+// compare the threads parameter to see the speedup of the parallel search
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"OPENING", "MIDDLEGAME", "ENDGAME"})
+    public String phase;
+
+    @Param({"5", "6"})
+    public int depth;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Position[] positions;
+    private Engine engine;
+
+    @Setup
+    public void setup() {
+        positions = FenCorpus.positions(phase);
+        engine = new Engine();
+        engine.setThreads(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public void timeToDepth(Blackhole blackhole) {
+        for (Position position : positions) {
+            engine.clearHash();
+            blackhole.consume(engine.search(position, SearchLimits.depth(depth)));
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package chess;
 
+import chess.board.Analysis;
 import chess.board.Board;
+import chess.board.SpriteAtlas;
 import processing.core.PApplet;
 import util.Color;
 import vector.Vector2;
 
 public class Main extends PApplet {
     Board board;
+    // started with the a key, kept for the whole run so the engine thread is made once
+    Analysis analysis;
+    // printed once the first frame with the piece textures is drawn
+    final StartupReport startup = new StartupReport();
 
     @Override
     public void settings() {
@@ -15,17 +21,30 @@ public class Main extends PApplet {
 
     @Override
     public void setup() {
+        startup.mark("setup");
         board = new Board(this, width - 100, 8, new Vector2(50, 50));
+        board.getTextures().thenRun(() -> startup.mark("textures"));
         board.loadFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
 
         board.setLightSquareColor(new Color(237, 188, 149));
         board.setDarkSquareColor(new Color(94, 42, 2));
+
+        // frames are only drawn when the board asks for one with redraw(), an idle board costs no cpu
+        noLoop();
     }
 
     @Override
     public void draw() {
         background(50);
         board.draw();
+
+        startup.mark("first frame");
+        SpriteAtlas atlas = board.getSpriteAtlas();
+        if (atlas.isReady() && !startup.has("textured frame")) {
+            startup.mark("textured frame");
+            String source = atlas.isLoadedFromCache() ? "read from cache" : "decoded on " + atlas.getLoadThreads() + " threads";
+            System.out.println(startup + " (textures " + source + " in " + atlas.getLoadNanos() / 1_000_000 + " ms)");
+        }
     }
 
     @Override
@@ -33,6 +52,13 @@ public class Main extends PApplet {
         board.mousePressed(mouseX, mouseY);
     }
 
+    @Override
+    public void mouseDragged() {
+        if (board.isHoldingPiece()) {
+            redraw();
+        }
+    }
+
     @Override
     public void mouseReleased() {
         board.mouseReleased(mouseX, mouseY);
@@ -40,6 +66,13 @@ public class Main extends PApplet {
 
     @Override
     public void keyPressed() {
+        if (key == 'a') {
+            if (analysis == null) {
+                analysis = new Analysis(this);
+            }
+            board.setAnalysis(board.getAnalysis() == null ? analysis : null);
+            return;
+        }
         System.out.println(board.getFen());
     }
 
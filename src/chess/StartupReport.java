@@ -0,0 +1,28 @@
+package chess;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// milliseconds from the start of the JVM to each start-up phase, the first mark of a phase counts
+public class StartupReport {
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+
+    public synchronized void mark(String phase) {
+        marks.putIfAbsent(phase, ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    public synchronized boolean has(String phase) {
+        return marks.containsKey(phase);
+    }
+
+    // toString
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("startup:");
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            builder.append(builder.length() > 8 ? ", " : " ").append(mark.getKey()).append(' ').append(mark.getValue()).append(" ms");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,340 @@
+package chess.bitboard;
+
+import chess.board.Position;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import static chess.bitboard.Bitboards.*;
+
+// move generator working on the bitboards of a position, returns the same moves as LegalMoves.getLegalMoves
+// only works for positions that keep bitboards, see Position.hasBitboards()
+// moves are written as encoded ints (see Move.encode) into a buffer supplied by the caller, so generating
+// does not allocate, the LegalMoves methods are object views for the ui
+public final class BitboardMoves {
+    // offsets of the piece types inside the bitboards of one color, see Piece.index()
+    private static final int PAWN = 0;
+    private static final int KNIGHT = 1;
+    private static final int BISHOP = 2;
+    private static final int ROOK = 3;
+    private static final int QUEEN = 4;
+    private static final int KING = 5;
+
+    private static final Piece.Type[] PROMOTION_TYPES = {Piece.Type.QUEEN, Piece.Type.ROOK, Piece.Type.BISHOP, Piece.Type.KNIGHT};
+
+    private BitboardMoves() {
+    }
+
+    // write the legal moves of the side to move into the buffer and return how many there are
+    // the buffer needs room for Move.MAX_MOVES moves
+    public static int generate(Position position, int[] moves) {
+        int us = position.getTurn().ordinal() - 1;
+        long pieces = position.getColorBitboard(position.getTurn());
+        int count = 0;
+        while (pieces != 0) {
+            int square = first(pieces);
+            pieces &= pieces - 1;
+            count = addLegalMoves(position, square, position.getPiece(square & 7, square >>> 3).type.ordinal() - 1, us, false, moves, count);
+        }
+        return count;
+    }
+
+    // write only the captures and promotions of the side to move, for the quiescence search of the engine
+    public static int generateCaptures(Position position, int[] moves) {
+        int us = position.getTurn().ordinal() - 1;
+        long pieces = position.getColorBitboard(position.getTurn());
+        int count = 0;
+        while (pieces != 0) {
+            int square = first(pieces);
+            pieces &= pieces - 1;
+            count = addLegalMoves(position, square, position.getPiece(square & 7, square >>> 3).type.ordinal() - 1, us, true, moves, count);
+        }
+        return count;
+    }
+
+    // write the legal moves of the piece on the square into the buffer and return how many there are
+    public static int generate(Position position, int square, int[] moves) {
+        Piece piece = position.getPiece(square & 7, square >>> 3);
+        if (piece == null || piece.isNone()) {
+            return 0;
+        }
+        int us = piece.color.ordinal() - 1;
+        return addLegalMoves(position, square, piece.type.ordinal() - 1, us, false, moves, 0);
+    }
+
+    // legal moves of the piece at x, y
+    public static LegalMoves getLegalMoves(Piece piece, int x, int y, Position position) {
+        LegalMoves legalMoves = new LegalMoves();
+        if (piece == null || piece.isNone()) {
+            return legalMoves;
+        }
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = addLegalMoves(position, y * 8 + x, piece.type.ordinal() - 1, piece.color.ordinal() - 1, false, moves, 0);
+        addDecoded(moves, count, legalMoves);
+        return legalMoves;
+    }
+
+    // legal moves of all pieces of the side to move
+    public static LegalMoves getAllLegalMoves(Position position) {
+        LegalMoves legalMoves = new LegalMoves();
+        int[] moves = new int[Move.MAX_MOVES];
+        addDecoded(moves, generate(position, moves), legalMoves);
+        return legalMoves;
+    }
+
+    private static void addDecoded(int[] moves, int count, LegalMoves legalMoves) {
+        for (int i = 0; i < count; i++) {
+            legalMoves.add(Move.decode(moves[i]));
+        }
+    }
+
+    // check if the color has at least one legal move, stops at the first one found
+    // the king is tried first, castling is never the only legal move because the king could step instead
+    public static boolean hasAnyLegalMove(Position position, Piece.Color color) {
+        int us = color.ordinal() - 1;
+        long kingBitboard = position.getBitboard(us * 6 + KING);
+        int kingSquare = kingBitboard == 0 ? -1 : first(kingBitboard);
+        long own = position.getColorBitboard(color);
+        long occupancy = position.getOccupancy();
+
+        if (kingSquare >= 0) {
+            long targets = KING_ATTACKS[kingSquare] & ~own;
+            while (targets != 0) {
+                int to = first(targets);
+                targets &= targets - 1;
+                if (isLegal(position, us, kingSquare, to, to, to)) return true;
+            }
+        }
+
+        long pieces = own & ~kingBitboard;
+        while (pieces != 0) {
+            int from = first(pieces);
+            pieces &= pieces - 1;
+
+            long targets;
+            switch (position.getPiece(from & 7, from >>> 3).type) {
+                case PAWN:
+                    if (hasPawnMove(position, from, us, kingSquare)) return true;
+                    continue;
+                case KNIGHT:
+                    targets = KNIGHT_ATTACKS[from];
+                    break;
+                case BISHOP:
+                    targets = bishopAttacks(from, occupancy);
+                    break;
+                case ROOK:
+                    targets = rookAttacks(from, occupancy);
+                    break;
+                default:
+                    targets = queenAttacks(from, occupancy);
+                    break;
+            }
+
+            targets &= ~own;
+            while (targets != 0) {
+                int to = first(targets);
+                targets &= targets - 1;
+                if (isLegal(position, us, from, to, to, kingSquare)) return true;
+            }
+        }
+        return false;
+    }
+
+    // same checks as addPawnMoves without writing the moves, promotions count once
+    private static boolean hasPawnMove(Position position, int from, int us, int kingSquare) {
+        long occupancy = position.getOccupancy();
+        int forward = us == 0 ? -8 : 8;
+
+        int to = from + forward;
+        if (to >= 0 && to < 64 && (occupancy & (1L << to)) == 0) {
+            if (isLegal(position, us, from, to, to, kingSquare)) return true;
+
+            int doubleTo = to + forward;
+            if ((from >>> 3) == (us == 0 ? 6 : 1) && (occupancy & (1L << doubleTo)) == 0
+                    && isLegal(position, us, from, doubleTo, doubleTo, kingSquare)) return true;
+        }
+
+        long captures = PAWN_ATTACKS[us][from] & position.getColorBitboard(us == 0 ? Piece.Color.BLACK : Piece.Color.WHITE);
+        while (captures != 0) {
+            to = first(captures);
+            captures &= captures - 1;
+            if (isLegal(position, us, from, to, to, kingSquare)) return true;
+        }
+
+        if (position.getEnPassantX() >= 0) {
+            to = position.getEnPassantY() * 8 + position.getEnPassantX();
+            int captured = (from & ~7) | position.getEnPassantX();
+            return (PAWN_ATTACKS[us][from] & (1L << to)) != 0 && (position.getBitboard((1 - us) * 6 + PAWN) & (1L << captured)) != 0
+                    && (occupancy & (1L << to)) == 0 && isLegal(position, us, from, to, captured, kingSquare);
+        }
+        return false;
+    }
+
+    // check if the square is attacked by pieces of the color
+    public static boolean isSquareAttacked(Position position, int square, Piece.Color byColor) {
+        return isAttacked(position, square, byColor.ordinal() - 1, position.getOccupancy(), -1L);
+    }
+
+    // check if the king of the color is attacked
+    public static boolean isCheck(Position position, Piece.Color color) {
+        long king = position.getBitboard(color, Piece.Type.KING);
+        return king != 0 && isSquareAttacked(position, first(king), opposite(color));
+    }
+
+    private static Piece.Color opposite(Piece.Color color) {
+        return color == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
+    }
+
+    // with capturesOnly only captures and promotions are added
+    private static int addLegalMoves(Position position, int from, int type, int us, boolean capturesOnly, int[] moves, int count) {
+        long own = position.getColorBitboard(us == 0 ? Piece.Color.WHITE : Piece.Color.BLACK);
+        long occupancy = position.getOccupancy();
+        long kingBitboard = position.getBitboard(us * 6 + KING);
+        int kingSquare = kingBitboard == 0 ? -1 : first(kingBitboard);
+
+        long targets;
+        switch (type) {
+            case PAWN:
+                return addPawnMoves(position, from, us, kingSquare, capturesOnly, moves, count);
+            case KNIGHT:
+                targets = KNIGHT_ATTACKS[from];
+                break;
+            case BISHOP:
+                targets = bishopAttacks(from, occupancy);
+                break;
+            case ROOK:
+                targets = rookAttacks(from, occupancy);
+                break;
+            case QUEEN:
+                targets = queenAttacks(from, occupancy);
+                break;
+            case KING:
+                targets = KING_ATTACKS[from];
+                if (!capturesOnly) {
+                    count = addCastlingMoves(position, from, us, moves, count);
+                }
+                kingSquare = -1;
+                break;
+            default:
+                return count;
+        }
+
+        targets &= capturesOnly ? occupancy & ~own : ~own;
+        while (targets != 0) {
+            int to = first(targets);
+            targets &= targets - 1;
+
+            if (!isLegal(position, us, from, to, to, kingSquare < 0 ? to : kingSquare)) continue;
+
+            int flags = (occupancy & (1L << to)) != 0 ? Move.CAPTURE : 0;
+            moves[count++] = Move.encode(from, to, flags, Piece.Type.NONE);
+        }
+        return count;
+    }
+
+    private static int addPawnMoves(Position position, int from, int us, int kingSquare, boolean capturesOnly, int[] moves, int count) {
+        long occupancy = position.getOccupancy();
+        long enemy = position.getColorBitboard(us == 0 ? Piece.Color.BLACK : Piece.Color.WHITE);
+        int forward = us == 0 ? -8 : 8;
+        int startRow = us == 0 ? 6 : 1;
+
+        // one and two steps forward, of the quiet moves only promotions are kept with capturesOnly
+        int to = from + forward;
+        boolean promotes = (to >>> 3) == 0 || (to >>> 3) == 7;
+        if (to >= 0 && to < 64 && (occupancy & (1L << to)) == 0 && (!capturesOnly || promotes)) {
+            if (isLegal(position, us, from, to, to, kingSquare)) {
+                count = addPawnMove(from, to, 0, moves, count);
+            }
+
+            int doubleTo = to + forward;
+            if (!capturesOnly && (from >>> 3) == startRow && (occupancy & (1L << doubleTo)) == 0 && isLegal(position, us, from, doubleTo, doubleTo, kingSquare)) {
+                moves[count++] = Move.encode(from, doubleTo, Move.DOUBLE_PAWN_PUSH, Piece.Type.NONE);
+            }
+        }
+
+        // captures
+        long captures = PAWN_ATTACKS[us][from] & enemy;
+        while (captures != 0) {
+            to = first(captures);
+            captures &= captures - 1;
+            if (isLegal(position, us, from, to, to, kingSquare)) {
+                count = addPawnMove(from, to, Move.CAPTURE, moves, count);
+            }
+        }
+
+        // en passant, the captured pawn stands next to the moving pawn
+        if (position.getEnPassantX() >= 0) {
+            to = position.getEnPassantY() * 8 + position.getEnPassantX();
+            int captured = (from & ~7) | position.getEnPassantX();
+            long enemyPawns = position.getBitboard((1 - us) * 6 + PAWN);
+            if ((PAWN_ATTACKS[us][from] & (1L << to)) != 0 && (enemyPawns & (1L << captured)) != 0
+                    && (occupancy & (1L << to)) == 0 && isLegal(position, us, from, to, captured, kingSquare)) {
+                moves[count++] = Move.encode(from, to, Move.EN_PASSANT | Move.CAPTURE, Piece.Type.NONE);
+            }
+        }
+        return count;
+    }
+
+    // add pawn move, or one move for every promotion when the pawn reaches the last row
+    private static int addPawnMove(int from, int to, int flags, int[] moves, int count) {
+        int row = to >>> 3;
+        if (row != 0 && row != 7) {
+            moves[count++] = Move.encode(from, to, flags, Piece.Type.NONE);
+            return count;
+        }
+
+        for (Piece.Type type : PROMOTION_TYPES) {
+            moves[count++] = Move.encode(from, to, flags | Move.PROMOTION, type);
+        }
+        return count;
+    }
+
+    private static int addCastlingMoves(Position position, int from, int us, int[] moves, int count) {
+        int row = us == 0 ? 7 : 0;
+        if (from != row * 8 + 4) return count;
+
+        int kingside = us == 0 ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = us == 0 ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+        if (!position.hasCastlingRights(kingside | queenside)) return count;
+
+        int them = 1 - us;
+        long occupancy = position.getOccupancy();
+        long rooks = position.getBitboard(us * 6 + ROOK);
+        if (isAttacked(position, from, them, occupancy, -1L)) return count;
+
+        int rookSquare = row * 8;
+        if (position.hasCastlingRights(queenside) && (rooks & (1L << rookSquare)) != 0
+                && (BETWEEN[from][rookSquare] & occupancy) == 0
+                && !isAttacked(position, from - 1, them, occupancy, -1L) && !isAttacked(position, from - 2, them, occupancy, -1L)) {
+            moves[count++] = Move.encode(from, from - 2, Move.CASTLE, Piece.Type.NONE);
+        }
+
+        rookSquare = row * 8 + 7;
+        if (position.hasCastlingRights(kingside) && (rooks & (1L << rookSquare)) != 0
+                && (BETWEEN[from][rookSquare] & occupancy) == 0
+                && !isAttacked(position, from + 1, them, occupancy, -1L) && !isAttacked(position, from + 2, them, occupancy, -1L)) {
+            moves[count++] = Move.encode(from, from + 2, Move.CASTLE, Piece.Type.NONE);
+        }
+        return count;
+    }
+
+    // check if the king is safe after moving a piece from one square to another and removing the captured piece
+    private static boolean isLegal(Position position, int us, int from, int to, int captured, int kingSquare) {
+        if (kingSquare < 0) return true;
+        long occupancy = (position.getOccupancy() & ~(1L << from) & ~(1L << captured)) | (1L << to);
+        return !isAttacked(position, kingSquare, 1 - us, occupancy, ~(1L << captured));
+    }
+
+    // check if the square is attacked by the side with the index, using the given occupancy
+    // and ignoring attackers outside the mask
+    private static boolean isAttacked(Position position, int square, int them, long occupancy, long mask) {
+        int offset = them * 6;
+        long queens = position.getBitboard(offset + QUEEN);
+        long attackers = (KNIGHT_ATTACKS[square] & position.getBitboard(offset + KNIGHT))
+                | (KING_ATTACKS[square] & position.getBitboard(offset + KING))
+                | (PAWN_ATTACKS[1 - them][square] & position.getBitboard(offset + PAWN))
+                | (bishopAttacks(square, occupancy) & (position.getBitboard(offset + BISHOP) | queens))
+                | (rookAttacks(square, occupancy) & (position.getBitboard(offset + ROOK) | queens));
+        return (attackers & mask) != 0;
+    }
+}
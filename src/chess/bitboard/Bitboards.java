@@ -0,0 +1,203 @@
+package chess.bitboard;
+
+// precomputed attack tables for the 8x8 board, square index is y * 8 + x with y = 0 being the black home row
+// sliding attacks use magic bitboards, the magics are searched once when the class is loaded
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long ROW_0 = 0xFFL;
+    public static final long ROW_7 = ROW_0 << 56;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    // pawn attacks indexed by color (0 white, 1 black) and square
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    // squares strictly between two squares on a line, 0 if they are not on a common line
+    public static final long[][] BETWEEN = new long[64][64];
+    // the whole line through two squares, 0 if they are not on a common line
+    public static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, -1}, {1, 1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    // state of the xorshift generator used for the magic search, fixed seed so the tables are reproducible
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int x = square & 7;
+            int y = square >>> 3;
+
+            for (int[] offset : KNIGHT_OFFSETS) {
+                KNIGHT_ATTACKS[square] |= bit(x + offset[0], y + offset[1]);
+            }
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    if (dx != 0 || dy != 0) {
+                        KING_ATTACKS[square] |= bit(x + dx, y + dy);
+                    }
+                }
+            }
+            PAWN_ATTACKS[0][square] = bit(x - 1, y - 1) | bit(x + 1, y - 1);
+            PAWN_ATTACKS[1][square] = bit(x - 1, y + 1) | bit(x + 1, y + 1);
+
+            ROOK_MASKS[square] = relevantMask(x, y, ROOK_DIRECTIONS);
+            BISHOP_MASKS[square] = relevantMask(x, y, BISHOP_DIRECTIONS);
+        }
+
+        ROOK_TABLE = new long[tableSize(ROOK_MASKS, ROOK_SHIFTS, ROOK_OFFSETS)];
+        BISHOP_TABLE = new long[tableSize(BISHOP_MASKS, BISHOP_SHIFTS, BISHOP_OFFSETS)];
+        for (int square = 0; square < 64; square++) {
+            findMagic(square, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, ROOK_TABLE);
+            findMagic(square, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS, BISHOP_TABLE);
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int[][] directions : new int[][][]{ROOK_DIRECTIONS, BISHOP_DIRECTIONS}) {
+                for (int[] direction : directions) {
+                    long ray = slidingAttacks(from & 7, from >>> 3, new int[][]{direction}, 0);
+                    long opposite = slidingAttacks(from & 7, from >>> 3, new int[][]{{-direction[0], -direction[1]}}, 0);
+                    long between = 0;
+                    for (int x = (from & 7) + direction[0], y = (from >>> 3) + direction[1]; x >= 0 && x < 8 && y >= 0 && y < 8; x += direction[0], y += direction[1]) {
+                        int to = y * 8 + x;
+                        BETWEEN[from][to] = between;
+                        LINE[from][to] = ray | opposite | (1L << from);
+                        between |= 1L << to;
+                    }
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static long rookAttacks(int square, long occupancy) {
+        return ROOK_TABLE[ROOK_OFFSETS[square] + (int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupancy) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + (int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupancy) {
+        return rookAttacks(square, occupancy) | bishopAttacks(square, occupancy);
+    }
+
+    // bit of the square x, y or 0 when it is outside the board
+    public static long bit(int x, int y) {
+        if (x < 0 || y < 0 || x >= 8 || y >= 8) {
+            return 0;
+        }
+        return 1L << (y * 8 + x);
+    }
+
+    // index of the lowest set bit
+    public static int first(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    // squares a sliding piece on x, y attacks when walking the rays square by square
+    private static long slidingAttacks(int x, int y, int[][] directions, long occupancy) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int destinationX = x + direction[0];
+            int destinationY = y + direction[1];
+            while (destinationX >= 0 && destinationX < 8 && destinationY >= 0 && destinationY < 8) {
+                long bit = 1L << (destinationY * 8 + destinationX);
+                attacks |= bit;
+                if ((occupancy & bit) != 0) break;
+                destinationX += direction[0];
+                destinationY += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    // squares whose occupancy changes the attacks, the last square of every ray never does
+    private static long relevantMask(int x, int y, int[][] directions) {
+        long mask = 0;
+        for (int[] direction : directions) {
+            int destinationX = x + direction[0];
+            int destinationY = y + direction[1];
+            while (destinationX + direction[0] >= 0 && destinationX + direction[0] < 8
+                    && destinationY + direction[1] >= 0 && destinationY + direction[1] < 8) {
+                mask |= 1L << (destinationY * 8 + destinationX);
+                destinationX += direction[0];
+                destinationY += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    // compute shifts and table offsets for every square and return the size of the shared table
+    private static int tableSize(long[] masks, int[] shifts, int[] offsets) {
+        int size = 0;
+        for (int square = 0; square < 64; square++) {
+            int bits = Long.bitCount(masks[square]);
+            shifts[square] = 64 - bits;
+            offsets[square] = size;
+            size += 1 << bits;
+        }
+        return size;
+    }
+
+    // try sparse random numbers until one maps every occupancy subset to a slot without destructive collisions
+    private static void findMagic(int square, int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets, long[] table) {
+        long mask = masks[square];
+        int size = 1 << Long.bitCount(mask);
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        int[] epoch = new int[size];
+
+        // enumerate all subsets of the mask
+        long subset = 0;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = slidingAttacks(square & 7, square >>> 3, directions, subset);
+            subset = (subset - mask) & mask;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            long magic = nextRandom() & nextRandom() & nextRandom();
+            if (Long.bitCount((mask * magic) >>> 56) < 6) continue;
+
+            boolean failed = false;
+            for (int i = 0; i < size && !failed; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> shifts[square]);
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[offsets[square] + index] = attacks[i];
+                } else if (table[offsets[square] + index] != attacks[i]) {
+                    failed = true;
+                }
+            }
+
+            if (!failed) {
+                magics[square] = magic;
+                return;
+            }
+        }
+    }
+
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -0,0 +1,204 @@
+package chess.board;
+
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchListener;
+import chess.engine.SearchResult;
+import chess.piece.Move;
+import chess.piece.Piece;
+import processing.core.PApplet;
+import processing.core.PGraphics;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+// engine analysis of the board position, searched on the engine thread and drawn as a text panel below the board and
+// an arrow for the best move
+// the search publishes every finished iteration as an immutable snapshot through an atomic reference, so drawing only
+// reads the latest one and never waits for the search; a snapshot names the search it belongs to, and iterations of a
+// search that was already replaced are dropped instead of overwriting the analysis of the new position
+public class Analysis {
+    // moves of the principal variation shown in the panel
+    private static final int PV_MOVES = 8;
+
+    private final PApplet sketch;
+    private final Engine engine = new Engine();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    // id of the last started search, only changed on the sketch thread
+    private int searchId;
+    private Future<SearchResult> running;
+
+    public Analysis(PApplet sketch) {
+        this.sketch = sketch;
+    }
+
+    // search the position until stopped or restarted, the search works on a copy so the position may change
+    // positions other than 8x8 and positions without moves are not searched, the panel then says so
+    public void start(Position position) {
+        cancel();
+        int id = ++searchId;
+        Piece.Color turn = position.getTurn();
+        if (!position.hasBitboards()) {
+            snapshot.set(new Snapshot(id, turn, null, "analysis only on 8x8 boards"));
+            return;
+        }
+        // the status tries moves, which the listeners of the position would see as changes, so a copy is asked
+        GameStatus status = new Position(position).getStatus();
+        if (status != GameStatus.ONGOING) {
+            snapshot.set(new Snapshot(id, turn, null, status.name().toLowerCase().replace('_', ' ')));
+            return;
+        }
+        snapshot.set(new Snapshot(id, turn, null, "searching"));
+        running = engine.start(position, SearchLimits.infinite(), new SearchListener() {
+            @Override
+            public void onIteration(SearchResult result) {
+                publish(id, result);
+            }
+
+            @Override
+            public void onFinished(SearchResult result) {
+                publish(id, result);
+            }
+        });
+    }
+
+    // stop the search and forget its analysis
+    public void stop() {
+        cancel();
+        searchId++;
+        snapshot.set(null);
+        sketch.redraw();
+    }
+
+    public boolean isRunning() {
+        return snapshot.get() != null;
+    }
+
+    // result of the last finished iteration for the current position, null before the first one
+    public SearchResult getResult() {
+        Snapshot current = snapshot.get();
+        return current == null ? null : current.result;
+    }
+
+    // stop the engine thread, the analysis can not be started again
+    public void shutdown() {
+        cancel();
+        engine.shutdown();
+    }
+
+    // cancelling stops the search right away and discards its result, the engine thread is then free for the next
+    private void cancel() {
+        if (running != null) {
+            running.cancel(false);
+            running = null;
+        }
+    }
+
+    // called on the engine thread, replaces the snapshot only while it still belongs to the same search
+    private void publish(int id, SearchResult result) {
+        Snapshot published = snapshot.updateAndGet(current -> current != null && current.id == id ? current.with(result) : current);
+        if (published != null && published.result == result) {
+            sketch.redraw();
+        }
+    }
+
+    // draw the best move arrow over the board and the panel below it
+    public void draw(PGraphics graphics, Board board) {
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            return;
+        }
+        SearchResult result = current.result;
+        if (result != null && result.bestMove != Move.NONE) {
+            drawArrow(graphics, board, Move.from(result.bestMove), Move.to(result.bestMove));
+        }
+
+        float x = board.offset.x;
+        float y = board.offset.y + board.width + 4;
+        graphics.fill(230);
+        graphics.textAlign(PApplet.LEFT, PApplet.TOP);
+        graphics.textSize(16);
+        if (result == null) {
+            graphics.text(current.message, x, y);
+            return;
+        }
+        graphics.text("depth " + result.depth + "   " + formatScore(result, current.turn) + "   "
+                + formatCount(result.nodes) + " nodes   " + formatCount(result.nodesPerSecond()) + " nps", x, y);
+        graphics.text(formatPv(result), x, y + 20);
+    }
+
+    private static void drawArrow(PGraphics graphics, Board board, int from, int to) {
+        float size = board.squareSize;
+        float fromX = board.offset.x + ((from & 7) + 0.5f) * size;
+        float fromY = board.offset.y + ((from >>> 3) + 0.5f) * size;
+        float toX = board.offset.x + ((to & 7) + 0.5f) * size;
+        float toY = board.offset.y + ((to >>> 3) + 0.5f) * size;
+        double angle = Math.atan2(toY - fromY, toX - fromX);
+        float head = size * 0.35f;
+        // the shaft ends where the head starts, so the translucent parts do not overlap
+        float endX = toX - (float) Math.cos(angle) * head;
+        float endY = toY - (float) Math.sin(angle) * head;
+
+        graphics.stroke(30, 120, 220, 170);
+        graphics.strokeWeight(size * 0.15f);
+        graphics.line(fromX, fromY, endX, endY);
+        graphics.noStroke();
+        graphics.fill(30, 120, 220, 170);
+        graphics.triangle(toX, toY,
+                endX + (float) Math.sin(angle) * head * 0.6f, endY - (float) Math.cos(angle) * head * 0.6f,
+                endX - (float) Math.sin(angle) * head * 0.6f, endY + (float) Math.cos(angle) * head * 0.6f);
+    }
+
+    // score from the side of white, in pawns or as moves to mate
+    private static String formatScore(SearchResult result, Piece.Color turn) {
+        int sign = turn == Piece.Color.WHITE ? 1 : -1;
+        if (result.isMate()) {
+            return "#" + sign * result.mateIn();
+        }
+        return String.format("%+.2f", sign * result.score / 100.0);
+    }
+
+    private static String formatCount(long count) {
+        if (count >= 1_000_000) {
+            return String.format("%.1fM", count / 1_000_000.0);
+        }
+        if (count >= 1_000) {
+            return String.format("%.1fk", count / 1_000.0);
+        }
+        return Long.toString(count);
+    }
+
+    private static String formatPv(SearchResult result) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < result.pv.length && i < PV_MOVES; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(Move.toUci(result.pv[i]));
+        }
+        if (result.pv.length > PV_MOVES) {
+            builder.append(" ...");
+        }
+        return builder.toString();
+    }
+
+    // what the panel shows for one search, a message until the first iteration is done
+    private static final class Snapshot {
+        final int id;
+        final Piece.Color turn;
+        final SearchResult result;
+        final String message;
+
+        Snapshot(int id, Piece.Color turn, SearchResult result, String message) {
+            this.id = id;
+            this.turn = turn;
+            this.result = result;
+            this.message = message;
+        }
+
+        Snapshot with(SearchResult result) {
+            return new Snapshot(id, turn, result, message);
+        }
+    }
+}
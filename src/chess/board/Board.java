@@ -5,30 +5,53 @@ import chess.piece.LegalMoves;
 import chess.piece.Move;
 import chess.piece.Piece;
 import processing.core.PApplet;
+import processing.core.PGraphics;
 import processing.core.PImage;
 import util.Color;
 import vector.Vector2;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Board {
+    // threads decoding the piece textures at start-up
+    private static final int TEXTURE_THREADS = 4;
+    // builds the move tables of the side to move off the sketch thread, one table at a time
+    private static final ExecutorService MOVE_GENERATOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "move-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public final PApplet sketch;
     public final int width;
     public final float squareSize;
     public final int boardSize;
     public final Vector2 offset;
 
-    private Piece.Color turn = Piece.Color.WHITE;
-
     private Color lightSquareColor = new Color(238, 238, 210);
     private Color darkSquareColor = new Color(118, 150, 86);
 
-    private Map<Piece, PImage> pieceImages;
-    private Piece[][] pieces;
+    private SpriteAtlas atlas;
+    private CompletableFuture<SpriteAtlas> textures;
+    private final Position position;
+
+    // squares and pieces at rest rendered offscreen, repainted only after a change marks it dirty
+    private PGraphics layer;
+    private volatile boolean layerDirty = true;
 
     private HoldingPiece holdingPiece;
-    private LegalMoves legalMoves;
+    // moves of the held piece, taken from the table of the position or made for its square alone
+    private MoveTable holdingMoves;
+
+    // counts changes of the position, a move table is only used for the generation it was built for
+    private volatile int generation;
+    private volatile MoveTable moveTable;
+
+    // engine analysis restarted with every change of the position, null when off
+    private Analysis analysis;
 
     // constructor that takes a PApplet parameter, a width and a boardSize then calculates the squareSize
     public Board(PApplet sketch, int width, int boardSize, Vector2 offset) {
@@ -38,74 +61,135 @@ public class Board {
         this.squareSize = (float) width / boardSize;
         this.offset = offset;
 
-        loadImages();
+        this.position = new Position(boardSize);
+        // changes made to the position from outside the board repaint it too
+        this.position.setListener(new SquareListener() {
+            @Override
+            public void squareChanged(int square, Piece oldPiece, Piece newPiece) {
+                generation++;
+                invalidate();
+            }
 
-        // init all pieces to none
-        pieces = new Piece[boardSize][boardSize];
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                pieces[i][j] = Piece.NONE;
+            @Override
+            public void cleared() {
+                generation++;
+                invalidate();
             }
-        }
+        });
+
+        loadImages();
+        updateMoves();
+    }
+
+    // mark the cached layer as outdated and ask the sketch for a frame, may be called from any thread
+    public void invalidate() {
+        layerDirty = true;
+        sketch.redraw();
     }
 
     // load chess position from fen string
     public void loadFen(String fen) {
-        String[] fenParts = fen.split(" ");
-        String[] rows = fenParts[0].split("/");
-        int row = 0;
+        position.loadFen(fen);
+        invalidate();
+        positionChanged();
+    }
 
-        pieces = new Piece[boardSize][boardSize];
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                pieces[i][j] = new Piece(Piece.Color.NONE, Piece.Type.NONE);
-            }
+    // start the background work for a new position
+    private void positionChanged() {
+        updateMoves();
+        if (analysis != null) {
+            analysis.start(position);
         }
+    }
 
-        for (String rowStr : rows) {
-            int col = 0;
-            for (char c : rowStr.toCharArray()) {
-                if (Character.isDigit(c)) {
-                    col += c - '0';
-                } else {
-                    pieces[col][row] = Piece.fromFen(c);
-                    col++;
-                }
-            }
-            row++;
+    // analyse the position with the engine until setAnalysis(null), the analysis follows every move made on the board
+    public void setAnalysis(Analysis analysis) {
+        if (this.analysis != null && this.analysis != analysis) {
+            this.analysis.stop();
+        }
+        this.analysis = analysis;
+        if (analysis != null) {
+            analysis.start(position);
+        }
+        sketch.redraw();
+    }
+
+    public Analysis getAnalysis() {
+        return analysis;
+    }
+
+    // start building the move table of the position on the move generator thread, clicks use it once it is ready
+    // the table is built from a copy, so the position may change meanwhile; a table that is outdated when it is done
+    // is dropped, and a job that is outdated when it starts is skipped
+    public void updateMoves() {
+        int current = ++generation;
+        Position copy = new Position(position);
+        CompletableFuture.supplyAsync(() -> generation == current ? MoveTable.of(copy, current) : null, MOVE_GENERATOR)
+                .whenComplete((table, error) -> {
+                    if (error != null) {
+                        System.err.println("Move table not built: " + error.getMessage());
+                    } else if (table != null && generation == current) {
+                        moveTable = table;
+                    }
+                });
+    }
+
+    // the move table of the current position, null while it is being built
+    public MoveTable getMoveTable() {
+        MoveTable table = moveTable;
+        return table != null && table.getGeneration() == generation ? table : null;
+    }
+
+    // moves of the piece on the square from the table, or generated on the calling thread when it is not ready
+    // generating makes and takes back moves, which would count as changes on the position itself, so a copy is used
+    private MoveTable movesFrom(int x, int y) {
+        MoveTable table = getMoveTable();
+        return table != null ? table : MoveTable.of(new Position(position), x, y, generation);
+    }
+
+    // the headless position this board renders
+    public Position getPosition() {
+        return position;
+    }
+
+    // start loading the piece textures scaled to the square size on background threads, pieces are drawn as
+    // placeholders until the returned future completes and the board is repainted with them
+    // -Dchess.textureCache=<dir> keeps the scaled textures there for the next start
+    public CompletableFuture<SpriteAtlas> loadImages() {
+        atlas = new SpriteAtlas(sketch, "assets/textures");
+        String cache = System.getProperty(SpriteAtlas.CACHE_PROPERTY);
+        if (cache != null) {
+            atlas.setCacheDirectory(Paths.get(cache));
         }
+        layerDirty = true;
+        int threads = Math.min(TEXTURE_THREADS, Runtime.getRuntime().availableProcessors());
+        textures = atlas.loadAsync(Math.round(squareSize), threads).whenComplete((loaded, error) -> {
+            if (error != null) {
+                System.err.println("Piece textures not loaded, drawing placeholders: " + error.getMessage());
+            }
+            invalidate();
+        });
+        return textures;
     }
 
-    // load images to pieceImages hashMap
-    public void loadImages() {
-        pieceImages = new HashMap<>(12);
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.PAWN), sketch.loadImage("assets/textures/pw480.png"));
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.ROOK), sketch.loadImage("assets/textures/rw480.png"));
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.KNIGHT), sketch.loadImage("assets/textures/nw480.png"));
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.BISHOP), sketch.loadImage("assets/textures/bw480.png"));
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.QUEEN), sketch.loadImage("assets/textures/qw480.png"));
-        pieceImages.put(new Piece(Piece.Color.WHITE, Piece.Type.KING), sketch.loadImage("assets/textures/kw480.png"));
+    // the textures loading or loaded, completes when the board can draw them
+    public CompletableFuture<SpriteAtlas> getTextures() {
+        return textures;
+    }
 
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.PAWN), sketch.loadImage("assets/textures/pb480.png"));
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.ROOK), sketch.loadImage("assets/textures/rb480.png"));
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.KNIGHT), sketch.loadImage("assets/textures/nb480.png"));
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.BISHOP), sketch.loadImage("assets/textures/bb480.png"));
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.QUEEN), sketch.loadImage("assets/textures/qb480.png"));
-        pieceImages.put(new Piece(Piece.Color.BLACK, Piece.Type.KING), sketch.loadImage("assets/textures/kb480.png"));
+    public SpriteAtlas getSpriteAtlas() {
+        return atlas;
     }
 
-    // get image for piece
+    // get image for piece, scaled to the square size, null for an empty square
     public PImage getImage(Piece piece) {
-        for (Piece p : pieceImages.keySet()) {
-            if (p.equals(piece)) {
-                return pieceImages.get(p);
-            }
-        }
-        return null;
+        return piece == null ? null : atlas.getSprite(piece);
     }
 
     // show legal moves in form of circles on squares
     public void showLegalMoves() {
+        LegalMoves legalMoves = holdingPiece == null || holdingMoves == null ? null
+                : holdingMoves.getMoves(holdingPiece.startPosX, holdingPiece.startPosY);
         if (legalMoves != null) {
             for (Move move : legalMoves.getLegalMoves()) {
                 if (move.hasFlags(Move.CAPTURE)) {
@@ -125,67 +209,83 @@ public class Board {
         }
     }
 
-    // show pieces on the board
-    public void showPieces() {
-        sketch.imageMode(sketch.CORNER);
+    // show pieces on the board at rest, the piece being dragged is drawn at the mouse instead
+    public void showPieces(PGraphics graphics, float x, float y) {
+        graphics.imageMode(PApplet.CORNER);
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
-                if (getPiece(i, j) != null && getPiece(i, j).color != Piece.Color.NONE && getPiece(i, j).type != Piece.Type.NONE && getPiece(i, j).showOnBoard) {
-                    sketch.image(getImage(getPiece(i, j)), i * squareSize + offset.x, j * squareSize + offset.y, squareSize, squareSize);
+                if (holdingPiece != null && holdingPiece.startPosX == i && holdingPiece.startPosY == j) continue;
+                Piece piece = getPiece(i, j);
+                if (!piece.isNone()) {
+                    atlas.draw(graphics, piece, i * squareSize + x, j * squareSize + y);
                 }
             }
         }
     }
 
-    // draw the board
-    public void draw() {
-        sketch.noStroke();
-        sketch.strokeWeight(1);
-        sketch.fill(lightSquareColor.r, lightSquareColor.g, lightSquareColor.b);
-        sketch.rect(offset.x, offset.y, width, width);
-        sketch.fill(darkSquareColor.r, darkSquareColor.g, darkSquareColor.b);
+    // draw the squares with their top left corner at x, y
+    public void showSquares(PGraphics graphics, float x, float y) {
+        graphics.noStroke();
+        graphics.strokeWeight(1);
+        graphics.fill(lightSquareColor.r, lightSquareColor.g, lightSquareColor.b);
+        graphics.rect(x, y, width, width);
+        graphics.fill(darkSquareColor.r, darkSquareColor.g, darkSquareColor.b);
         for (int i = 0; i < boardSize; i++) {
             for (int j = 0; j < boardSize; j++) {
                 if ((i + j) % 2 != 0) {
-                    sketch.rect(i * squareSize + offset.x, j * squareSize + offset.y, squareSize, squareSize);
+                    graphics.rect(i * squareSize + x, j * squareSize + y, squareSize, squareSize);
                 }
             }
         }
+    }
+
+    // draw the board from the cached layer, which is only repainted when something on it changed
+    // legal moves and the dragged piece change with every mouse move and are drawn on top
+    public void draw() {
+        if (layer == null) {
+            layer = sketch.createGraphics(width, width);
+        }
+        if (layerDirty) {
+            layerDirty = false;
+            layer.beginDraw();
+            layer.clear();
+            showSquares(layer, 0, 0);
+            showPieces(layer, 0, 0);
+            layer.endDraw();
+        }
+        sketch.imageMode(PApplet.CORNER);
+        sketch.image(layer, offset.x, offset.y);
 
-        showPieces();
+        if (analysis != null) {
+            analysis.draw(sketch.g, this);
+        }
         showLegalMoves();
         if (holdingPiece != null) {
-            sketch.imageMode(sketch.CENTER);
-            sketch.image(getImage(holdingPiece.piece), sketch.mouseX, sketch.mouseY, squareSize, squareSize);
+            float half = atlas.getCellSize() / 2f;
+            atlas.draw(sketch.g, holdingPiece.piece, sketch.mouseX - half, sketch.mouseY - half);
         }
     }
 
+    // true while a piece is dragged, every mouse move then needs a frame
+    public boolean isHoldingPiece() {
+        return holdingPiece != null;
+    }
+
     // get piece from board at position x, y if x and y is not in the board return null
     public Piece getPiece(int x, int y) {
-        if (x < 0 || y < 0 || x >= boardSize || y >= boardSize) {
-            return null;
-        }
-        return pieces[x][y];
+        return position.getPiece(x, y);
     }
 
     // set piece on board at position x, y
     public void setPiece(Piece piece, int x, int y) {
-        if (x < 0 || y < 0 || x >= boardSize || y >= boardSize) {
-            return;
-        }
-        pieces[x][y] = piece;
+        position.setPiece(piece, x, y);
+        invalidate();
+        positionChanged();
     }
 
     // find first pieces of type and color on the board and return its position
     public int[] findPiece(Piece.Type type, Piece.Color color) {
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                if (getPiece(i, j) != null && getPiece(i, j).type == type && getPiece(i, j).color == color) {
-                    return new int[]{i, j};
-                }
-            }
-        }
-        return null;
+        return position.findPiece(type, color);
     }
 
     // check if x , y is in the board, include offset
@@ -193,66 +293,25 @@ public class Board {
         return x >= offset.x && x <= offset.x + width && y >= offset.y && y <= offset.y + width;
     }
 
-    private boolean isCheckMate(Piece.Color forColor) {
-        boolean isCheckMate = true;
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                Piece piece = getPiece(i, j);
-                if (piece != null && piece.color == forColor) {
-                    if (LegalMoves.getLegalMoves(piece, i, j, this) != null && LegalMoves.getLegalMoves(piece, i, j,
-                            this).getLegalMoves().size() > 0) {
-                        isCheckMate = false;
-                    }
-                }
-            }
-        }
-
-        return isCheckMate;
-    }
-
     private void movePiece(Move move) {
-        if (move.hasFlags(Move.CAPTURE)) {
-        }
-
-        if (move.hasFlags(Move.EN_PASSANT)) {
-            setPiece(Piece.NONE, move.referenceX, move.referenceY);
-        }
-
-        if (move.hasFlags(Move.CASTLE)) {
-            if (move.referenceX < move.fromX) {
-                setPiece(getPiece(move.referenceX, move.referenceY), move.toX + 1, move.fromY);
-                setPiece(Piece.NONE, move.referenceX, move.referenceY);
-            } else if (move.referenceX > move.fromX) {
-                setPiece(getPiece(move.referenceX, move.referenceY), move.toX - 1, move.fromY);
-                setPiece(Piece.NONE, move.referenceX, move.referenceY);
-            }
-        }
-
-        pieces[move.fromX][move.fromY].pawnPushedTwice = move.hasFlags(Move.DOUBLE_PAWN_PUSH);
-
-        pieces[move.toX][move.toY] = pieces[move.fromX][move.fromY];
-        pieces[move.toX][move.toY].moved = true;
-        pieces[move.toX][move.toY].showOnBoard = true;
-        pieces[move.fromX][move.fromY] = Piece.NONE;
-
-        turn = turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
-
-        if (isCheckMate(turn)) {
-            System.out.println("Checkmate " + turn + " lost");
+        position.makeMove(move);
+        invalidate();
+
+        GameStatus status = position.getStatus();
+        if (status == GameStatus.CHECKMATE) {
+            System.out.println("Checkmate " + position.getTurn() + " lost");
+        } else if (status.isDraw()) {
+            System.out.println("Draw by " + status.name().toLowerCase().replace('_', ' '));
         }
+        // the status tries moves on the position, which counts as changes, so the table is started after it
+        positionChanged();
     }
 
     private Move validMove(int x, int y) {
-        if (legalMoves == null) {
+        if (holdingMoves == null) {
             return null;
         }
-
-        for (Move move : legalMoves.getLegalMoves()) {
-            if (move.toX == x && move.toY == y) {
-                return move;
-            }
-        }
-        return null;
+        return holdingMoves.getMove(holdingPiece.startPosX, holdingPiece.startPosY, x, y);
     }
 
     public void mousePressed(int mouseX, int mouseY) {
@@ -263,11 +322,11 @@ public class Board {
         int boardX = (int) ((mouseX - offset.x) / squareSize);
         int boardY = (int) ((mouseY - offset.y) / squareSize);
         Piece piece = getPiece(boardX, boardY);
-        if (piece != null && !piece.isNone() && piece.color == turn) {
+        if (piece != null && !piece.isNone() && piece.color == position.getTurn()) {
             if (piece != null && !piece.isNone()) {
                 holdingPiece = new HoldingPiece(piece, mouseX, mouseY, boardX, boardY);
-                legalMoves = LegalMoves.getLegalMoves(piece, boardX, boardY, this);
-                getPiece(boardX, boardY).showOnBoard = false;
+                holdingMoves = movesFrom(boardX, boardY);
+                invalidate();
             }
         }
     }
@@ -275,9 +334,9 @@ public class Board {
     public void mouseReleased(int mouseX, int mouseY) {
         if (!inBoard(mouseX, mouseY)) {
             if (holdingPiece != null) {
-                getPiece(holdingPiece.startPosX, holdingPiece.startPosY).showOnBoard = true;
                 holdingPiece = null;
-                legalMoves = null;
+                holdingMoves = null;
+                invalidate();
             }
             return;
         }
@@ -287,20 +346,19 @@ public class Board {
 
         if (holdingPiece != null) {
             if (holdingPiece.startPosX == boardX && holdingPiece.startPosY == boardY) {
-                holdingPiece.piece.showOnBoard = true;
                 holdingPiece = null;
-                legalMoves = null;
+                holdingMoves = null;
+                invalidate();
                 return;
             }
 
             Move move = validMove(boardX, boardY);
+            holdingPiece = null;
+            holdingMoves = null;
             if (move != null) {
                 movePiece(move);
-            } else {
-                getPiece(holdingPiece.startPosX, holdingPiece.startPosY).showOnBoard = true;
             }
-            holdingPiece = null;
-            legalMoves = null;
+            invalidate();
         }
     }
 
@@ -311,6 +369,7 @@ public class Board {
 
     public void setLightSquareColor(Color lightSquareColor) {
         this.lightSquareColor = lightSquareColor;
+        invalidate();
     }
 
     public Color getDarkSquareColor() {
@@ -319,53 +378,17 @@ public class Board {
 
     public void setDarkSquareColor(Color darkSquareColor) {
         this.darkSquareColor = darkSquareColor;
+        invalidate();
     }
 
     // get fen from board
     public String getFen() {
-        String fen = "";
-        int emptySquares = 0;
-
-        for (int j = 0; j < boardSize; j++) {
-            for (int i = 0; i < boardSize; i++) {
-                if (getPiece(i, j).type == Piece.Type.NONE) {
-                    emptySquares++;
-                } else {
-                    if (emptySquares > 0) {
-                        fen += emptySquares;
-                        emptySquares = 0;
-                    }
-                    fen += getPiece(i, j).toFen();
-                }
-            }
-            if (emptySquares > 0) {
-                fen += emptySquares;
-                emptySquares = 0;
-            }
-            if (j < boardSize - 1) {
-                fen += "/";
-            }
-        }
-//        fen += " " + turn.toString().toLowerCase();
-        return fen;
+        return position.getFen();
     }
 
     // toString
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < boardSize; i++) {
-            for (int j = 0; j < boardSize; j++) {
-                String piece = pieces[j][i].toString();
-                // string should not be shorter than 6 chars
-                while (piece.length() < 6) {
-                    piece += " ";
-                }
-
-                sb.append(piece).append(" ");
-            }
-            sb.append("\n");
-        }
-        return sb.toString();
+        return position.toString();
     }
 }
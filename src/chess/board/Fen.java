@@ -0,0 +1,355 @@
+package chess.board;
+
+import chess.piece.Piece;
+
+import java.nio.charset.StandardCharsets;
+
+// fen and epd reading and writing
+// the parser works on any CharSequence or a range of ascii bytes and loads into an existing position,
+// so a corpus can be read without creating a position or a string per line
+public final class Fen {
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    // shared pieces indexed by their fen char, null for chars that are not pieces
+    private static final Piece[] PIECES = new Piece[128];
+    private static final Piece.Color[] COLORS = {Piece.Color.WHITE, Piece.Color.BLACK};
+
+    static {
+        String chars = "PNBRQK";
+        Piece.Type[] types = {Piece.Type.PAWN, Piece.Type.KNIGHT, Piece.Type.BISHOP, Piece.Type.ROOK, Piece.Type.QUEEN, Piece.Type.KING};
+        for (int i = 0; i < types.length; i++) {
+            PIECES[chars.charAt(i)] = Piece.of(Piece.Color.WHITE, types[i]);
+            PIECES[Character.toLowerCase(chars.charAt(i))] = Piece.of(Piece.Color.BLACK, types[i]);
+        }
+    }
+
+    private Fen() {
+    }
+
+    // load a full fen, the clocks are optional, on malformed input the position is cleared and an exception thrown
+    public static void load(Position position, CharSequence fen) {
+        load(position, fen, 0, fen.length());
+    }
+
+    public static void load(Position position, CharSequence fen, int start, int end) {
+        int i = skipSpaces(fen, parse(position, fen, start, end, false), end);
+        if (i != end) {
+            position.clear();
+            throw error(fen, start, end, i, "unexpected text after the fen");
+        }
+    }
+
+    // load a fen from ascii bytes, for example a line of a memory mapped file
+    public static void load(Position position, byte[] bytes, int offset, int length) {
+        load(position, new AsciiSequence(bytes, offset, length));
+    }
+
+    // load the four position fields of an epd and return the index where its operations start
+    public static int loadEpd(Position position, CharSequence epd) {
+        return skipSpaces(epd, parse(position, epd, 0, epd.length(), true), epd.length());
+    }
+
+    public static String toFen(Position position) {
+        StringBuilder builder = new StringBuilder(90);
+        append(position, builder);
+        return builder.toString();
+    }
+
+    public static String toEpd(Position position) {
+        StringBuilder builder = new StringBuilder(80);
+        appendEpd(position, builder);
+        return builder.toString();
+    }
+
+    // write the full fen of the position
+    public static void append(Position position, StringBuilder builder) {
+        appendEpd(position, builder);
+        builder.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+    }
+
+    // write the placement, side to move, castling and en passant fields
+    public static void appendEpd(Position position, StringBuilder builder) {
+        int size = position.boardSize;
+        for (int y = 0; y < size; y++) {
+            int emptySquares = 0;
+            for (int x = 0; x < size; x++) {
+                Piece piece = position.getPiece(x, y);
+                if (piece.isNone()) {
+                    emptySquares++;
+                    continue;
+                }
+                if (emptySquares > 0) {
+                    builder.append(emptySquares);
+                    emptySquares = 0;
+                }
+                builder.append(piece.toFen());
+            }
+            if (emptySquares > 0) {
+                builder.append(emptySquares);
+            }
+            if (y < size - 1) {
+                builder.append('/');
+            }
+        }
+
+        builder.append(position.getTurn() == Piece.Color.BLACK ? " b " : " w ");
+
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            builder.append('-');
+        } else {
+            if ((rights & Position.WHITE_KINGSIDE) != 0) builder.append('K');
+            if ((rights & Position.WHITE_QUEENSIDE) != 0) builder.append('Q');
+            if ((rights & Position.BLACK_KINGSIDE) != 0) builder.append('k');
+            if ((rights & Position.BLACK_QUEENSIDE) != 0) builder.append('q');
+        }
+
+        builder.append(' ');
+        if (position.getEnPassantX() < 0) {
+            builder.append('-');
+        } else {
+            builder.append((char) ('a' + position.getEnPassantX())).append(size - position.getEnPassantY());
+        }
+    }
+
+    // parse the fields into the position and return the index after the last parsed field
+    private static int parse(Position position, CharSequence fen, int start, int end, boolean epd) {
+        position.clear();
+        try {
+            int size = position.boardSize;
+            int i = parsePlacement(position, fen, skipSpaces(fen, start, end), end, start);
+            for (Piece.Color color : COLORS) {
+                if (position.getKingX(color) < 0) {
+                    throw error(fen, start, end, i, "no " + color + " king");
+                }
+            }
+
+            i = expectSpace(fen, i, end, start);
+            Piece.Color turn;
+            char c = charAt(fen, i, end);
+            if (c == 'w') {
+                turn = Piece.Color.WHITE;
+            } else if (c == 'b') {
+                turn = Piece.Color.BLACK;
+            } else {
+                throw error(fen, start, end, i, "side to move must be w or b");
+            }
+            // the side that just moved can not have left its own king in check
+            if (position.isCheck(turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE)) {
+                throw error(fen, start, end, i, "the side not to move is in check");
+            }
+
+            i = expectSpace(fen, i + 1, end, start);
+            int castlingRights = 0;
+            if (charAt(fen, i, end) == '-') {
+                i++;
+            } else {
+                for (; i < end && !isSpace(fen.charAt(i)); i++) {
+                    int right = castlingRight(fen.charAt(i));
+                    if (right == 0 || (castlingRights & right) != 0) {
+                        throw error(fen, start, end, i, "invalid castling rights");
+                    }
+                    castlingRights |= right;
+                }
+                if (castlingRights == 0) {
+                    throw error(fen, start, end, i, "missing castling rights");
+                }
+            }
+
+            i = expectSpace(fen, i, end, start);
+            int enPassantX = -1;
+            int enPassantY = -1;
+            if (charAt(fen, i, end) == '-') {
+                i++;
+            } else {
+                enPassantX = charAt(fen, i, end) - 'a';
+                int rank = 0;
+                int j = i + 1;
+                for (; j < end && isDigit(fen.charAt(j)); j++) {
+                    rank = rank * 10 + fen.charAt(j) - '0';
+                }
+                enPassantY = size - rank;
+                // the square passed by a double push of the side that is not to move
+                int expectedY = turn == Piece.Color.WHITE ? 2 : size - 3;
+                if (enPassantX < 0 || enPassantX >= size || j == i + 1 || enPassantY != expectedY) {
+                    throw error(fen, start, end, i, "invalid en passant square");
+                }
+                i = j;
+            }
+
+            int halfmoveClock = 0;
+            int fullmoveNumber = 1;
+            if (!epd) {
+                int j = skipSpaces(fen, i, end);
+                if (j < end && j > i) {
+                    i = parseNumber(fen, j, end, start);
+                    halfmoveClock = number(fen, j, i);
+                    j = skipSpaces(fen, i, end);
+                    if (j < end && j > i) {
+                        i = parseNumber(fen, j, end, start);
+                        // some tools write 0 for the first move
+                        fullmoveNumber = Math.max(1, number(fen, j, i));
+                    }
+                }
+            }
+
+            position.setState(turn, castlingRights, enPassantX, enPassantY, halfmoveClock, fullmoveNumber);
+            return i;
+        } catch (IllegalArgumentException e) {
+            position.clear();
+            throw e;
+        }
+    }
+
+    // read the ranks from the top row down, every rank must fill the board exactly
+    private static int parsePlacement(Position position, CharSequence fen, int i, int end, int start) {
+        int size = position.boardSize;
+        int x = 0;
+        int y = 0;
+        for (; i < end; i++) {
+            char c = fen.charAt(i);
+            if (isSpace(c)) {
+                break;
+            }
+            if (c == '/') {
+                if (x != size || y == size - 1) {
+                    throw error(fen, start, end, i, "rank " + (size - y) + " does not have " + size + " squares");
+                }
+                x = 0;
+                y++;
+            } else if (isDigit(c)) {
+                int emptySquares = 0;
+                for (; i < end && isDigit(fen.charAt(i)); i++) {
+                    emptySquares = emptySquares * 10 + fen.charAt(i) - '0';
+                }
+                i--;
+                x += emptySquares;
+                if (emptySquares == 0 || x > size) {
+                    throw error(fen, start, end, i, "invalid number of empty squares");
+                }
+            } else {
+                Piece piece = c < PIECES.length ? PIECES[c] : null;
+                if (piece == null) {
+                    throw error(fen, start, end, i, "invalid piece '" + c + "'");
+                }
+                if (x >= size) {
+                    throw error(fen, start, end, i, "rank " + (size - y) + " has more than " + size + " squares");
+                }
+                if (piece.isPawn() && (y == 0 || y == size - 1)) {
+                    throw error(fen, start, end, i, "pawn on the first or last rank");
+                }
+                if (piece.isKing() && position.getKingX(piece.color) >= 0) {
+                    throw error(fen, start, end, i, "more than one " + piece.color + " king");
+                }
+                position.setPiece(piece, x, y);
+                x++;
+            }
+        }
+        if (x != size || y != size - 1) {
+            throw error(fen, start, end, i, "piece placement does not have " + size + " ranks of " + size + " squares");
+        }
+        return i;
+    }
+
+    private static int castlingRight(char c) {
+        switch (c) {
+            case 'K':
+                return Position.WHITE_KINGSIDE;
+            case 'Q':
+                return Position.WHITE_QUEENSIDE;
+            case 'k':
+                return Position.BLACK_KINGSIDE;
+            case 'q':
+                return Position.BLACK_QUEENSIDE;
+            default:
+                return 0;
+        }
+    }
+
+    private static int parseNumber(CharSequence fen, int i, int end, int start) {
+        int j = i;
+        while (j < end && isDigit(fen.charAt(j))) {
+            j++;
+        }
+        if (j == i || j - i > 9) {
+            throw error(fen, start, end, i, "invalid number");
+        }
+        return j;
+    }
+
+    private static int number(CharSequence fen, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + fen.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    // fields are separated by one or more spaces
+    private static int expectSpace(CharSequence fen, int i, int end, int start) {
+        if (i >= end || !isSpace(fen.charAt(i))) {
+            throw error(fen, start, end, i, "missing field");
+        }
+        return skipSpaces(fen, i, end);
+    }
+
+    private static int skipSpaces(CharSequence fen, int i, int end) {
+        while (i < end && isSpace(fen.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static char charAt(CharSequence fen, int i, int end) {
+        return i < end ? fen.charAt(i) : 0;
+    }
+
+    // tabs and line ends count as spaces so lines can be passed with their terminator
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static IllegalArgumentException error(CharSequence fen, int start, int end, int index, String message) {
+        return new IllegalArgumentException("Invalid fen \"" + fen.subSequence(start, end) + "\" at " + (index - start) + ": " + message);
+    }
+
+    // read only view of ascii bytes, so byte input goes through the same parser without decoding
+    private static final class AsciiSequence implements CharSequence {
+        private final byte[] bytes;
+        private final int offset;
+        private final int length;
+
+        AsciiSequence(byte[] bytes, int offset, int length) {
+            if (offset < 0 || length < 0 || offset + length > bytes.length) {
+                throw new IllegalArgumentException("Range " + offset + "+" + length + " is outside of " + bytes.length + " bytes");
+            }
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiSequence(bytes, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
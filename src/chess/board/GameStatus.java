@@ -0,0 +1,19 @@
+package chess.board;
+
+// state of the game for the side to move
+public enum GameStatus {
+    ONGOING,
+    CHECKMATE,
+    STALEMATE,
+    FIFTY_MOVE_RULE,
+    THREEFOLD_REPETITION,
+    INSUFFICIENT_MATERIAL;
+
+    public boolean isDraw() {
+        return this == STALEMATE || this == FIFTY_MOVE_RULE || this == THREEFOLD_REPETITION || this == INSUFFICIENT_MATERIAL;
+    }
+
+    public boolean isGameOver() {
+        return this != ONGOING;
+    }
+}
@@ -0,0 +1,89 @@
+package chess.board;
+
+import chess.piece.CheckInfo;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+// legal moves of the side to move grouped by origin square, so the moves of a picked up piece and the move to a
+// destination are array lookups; square i is y * boardSize + x
+// a table is built once and not changed after, so it can be made on one thread and read on another
+public class MoveTable {
+    private final int boardSize;
+    // generation of the board position the table was built for
+    private final int generation;
+    // moves per origin square, null for squares without moves
+    private final LegalMoves[] moves;
+    // per origin square the move played when dropping on each destination, the queen for promotions
+    private final Move[][] targets;
+
+    private MoveTable(int boardSize, int generation) {
+        this.boardSize = boardSize;
+        this.generation = generation;
+        this.moves = new LegalMoves[boardSize * boardSize];
+        this.targets = new Move[boardSize * boardSize][];
+    }
+
+    // moves of every piece of the side to move
+    public static MoveTable of(Position position, int generation) {
+        MoveTable table = new MoveTable(position.boardSize, generation);
+        CheckInfo checkInfo = CheckInfo.of(position, position.getTurn());
+        for (int x = 0; x < position.boardSize; x++) {
+            for (int y = 0; y < position.boardSize; y++) {
+                Piece piece = position.getPiece(x, y);
+                if (piece.color == position.getTurn()) {
+                    table.put(x, y, LegalMoves.getLegalMoves(piece, x, y, position, checkInfo));
+                }
+            }
+        }
+        return table;
+    }
+
+    // moves of the piece on one square only, for when the whole table is not ready yet
+    public static MoveTable of(Position position, int x, int y, int generation) {
+        MoveTable table = new MoveTable(position.boardSize, generation);
+        Piece piece = position.getPiece(x, y);
+        if (piece != null && piece.color == position.getTurn()) {
+            table.put(x, y, LegalMoves.getLegalMoves(piece, x, y, position));
+        }
+        return table;
+    }
+
+    private void put(int x, int y, LegalMoves legalMoves) {
+        if (legalMoves == null || legalMoves.isEmpty()) {
+            return;
+        }
+        int origin = y * boardSize + x;
+        Move[] byDestination = new Move[boardSize * boardSize];
+        for (Move move : legalMoves.getLegalMoves()) {
+            int destination = move.toY * boardSize + move.toX;
+            if (byDestination[destination] == null) {
+                byDestination[destination] = move;
+            }
+        }
+        moves[origin] = legalMoves;
+        targets[origin] = byDestination;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    // moves of the piece on the square, null when it has none or the square is outside the board
+    public LegalMoves getMoves(int x, int y) {
+        return contains(x, y) ? moves[y * boardSize + x] : null;
+    }
+
+    // the move from one square to another, null when there is none
+    public Move getMove(int fromX, int fromY, int toX, int toY) {
+        if (!contains(fromX, fromY) || !contains(toX, toY)) {
+            return null;
+        }
+        Move[] byDestination = targets[fromY * boardSize + fromX];
+        return byDestination == null ? null : byDestination[toY * boardSize + toX];
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && x < boardSize && y >= 0 && y < boardSize;
+    }
+}
@@ -0,0 +1,129 @@
+package chess.board;
+
+import chess.piece.Piece;
+
+import java.nio.ByteBuffer;
+
+// 32 byte binary form of a position for large datasets, against about 60 bytes of a fen string
+// bytes 0-7 are the occupancy bitboard, bytes 8-23 hold a 4 bit Piece.index() for every occupied square in the order
+// of the bitboard, the low half of a byte first; byte 24 has the side to move in bit 0 and the castling rights above
+// it, byte 25 the en passant file plus one, byte 26 the halfmove clock, bytes 27-28 the fullmove number and bytes
+// 29-31 are zero; all numbers are little endian, clocks too large for their field are stored as the largest value
+// reading and writing go through absolute indexes, so the same buffer may be used by several threads
+public final class PackedPosition {
+    public static final int BYTES = 32;
+    public static final int MAX_PIECES = 32;
+
+    private static final int PIECES_OFFSET = 8;
+    private static final int STATE_OFFSET = 24;
+    private static final Piece[] PIECES = new Piece[12];
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            for (Piece.Type type : Piece.Type.values()) {
+                if (type != Piece.Type.NONE) {
+                    Piece piece = Piece.of(color == 0 ? Piece.Color.WHITE : Piece.Color.BLACK, type);
+                    PIECES[piece.index()] = piece;
+                }
+            }
+        }
+    }
+
+    private PackedPosition() {
+    }
+
+    public static byte[] pack(Position position) {
+        byte[] bytes = new byte[BYTES];
+        write(position, ByteBuffer.wrap(bytes), 0);
+        return bytes;
+    }
+
+    public static void unpack(Position position, byte[] bytes) {
+        read(position, ByteBuffer.wrap(bytes), 0);
+    }
+
+    // write the position to the 32 bytes at the offset, throws IllegalArgumentException for boards other than 8x8 or
+    // more than 32 pieces
+    public static void write(Position position, ByteBuffer buffer, int offset) {
+        if (!position.hasBitboards()) {
+            throw new IllegalArgumentException("Only 8x8 positions can be packed");
+        }
+        long occupancy = position.getOccupancy();
+        if (Long.bitCount(occupancy) > MAX_PIECES) {
+            throw new IllegalArgumentException("Packed positions have at most " + MAX_PIECES + " pieces, found " + Long.bitCount(occupancy));
+        }
+        for (int i = 0; i < 8; i++) {
+            buffer.put(offset + i, (byte) (occupancy >>> (8 * i)));
+        }
+
+        int nibbles = 0;
+        int count = 0;
+        for (long remaining = occupancy; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            nibbles |= position.getPiece(square & 7, square >>> 3).index() << (4 * (count & 1));
+            if ((count & 1) == 1) {
+                buffer.put(offset + PIECES_OFFSET + count / 2, (byte) nibbles);
+                nibbles = 0;
+            }
+            count++;
+        }
+        if ((count & 1) == 1) {
+            buffer.put(offset + PIECES_OFFSET + count / 2, (byte) nibbles);
+            count++;
+        }
+        for (int i = count / 2; i < MAX_PIECES / 2; i++) {
+            buffer.put(offset + PIECES_OFFSET + i, (byte) 0);
+        }
+
+        int fullmove = Math.min(Math.max(position.getFullmoveNumber(), 0), 0xFFFF);
+        buffer.put(offset + STATE_OFFSET, (byte) ((position.getTurn() == Piece.Color.BLACK ? 1 : 0) | position.getCastlingRights() << 1));
+        buffer.put(offset + STATE_OFFSET + 1, (byte) (position.getEnPassantX() + 1));
+        buffer.put(offset + STATE_OFFSET + 2, (byte) Math.min(Math.max(position.getHalfmoveClock(), 0), 0xFF));
+        buffer.put(offset + STATE_OFFSET + 3, (byte) fullmove);
+        buffer.put(offset + STATE_OFFSET + 4, (byte) (fullmove >>> 8));
+        for (int i = STATE_OFFSET + 5; i < BYTES; i++) {
+            buffer.put(offset + i, (byte) 0);
+        }
+    }
+
+    // load the position from the 32 bytes at the offset, on malformed data the position is cleared and an
+    // IllegalArgumentException thrown
+    public static void read(Position position, ByteBuffer buffer, int offset) {
+        if (!position.hasBitboards()) {
+            throw new IllegalArgumentException("Only 8x8 positions can be unpacked");
+        }
+        long occupancy = 0;
+        for (int i = 0; i < 8; i++) {
+            occupancy |= (buffer.get(offset + i) & 0xFFL) << (8 * i);
+        }
+        if (Long.bitCount(occupancy) > MAX_PIECES) {
+            throw new IllegalArgumentException("Packed position with " + Long.bitCount(occupancy) + " pieces");
+        }
+
+        position.clear();
+        int count = 0;
+        for (long remaining = occupancy; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            int code = (buffer.get(offset + PIECES_OFFSET + count / 2) >>> (4 * (count & 1))) & 0xF;
+            if (code >= PIECES.length) {
+                position.clear();
+                throw new IllegalArgumentException("Packed position with piece code " + code);
+            }
+            position.setPiece(PIECES[code], square & 7, square >>> 3);
+            count++;
+        }
+
+        int state = buffer.get(offset + STATE_OFFSET) & 0xFF;
+        int enPassantX = (buffer.get(offset + STATE_OFFSET + 1) & 0xFF) - 1;
+        if (state >>> 5 != 0 || enPassantX > 7) {
+            position.clear();
+            throw new IllegalArgumentException("Packed position with state " + state + " and en passant file " + enPassantX);
+        }
+        Piece.Color turn = (state & 1) == 0 ? Piece.Color.WHITE : Piece.Color.BLACK;
+        // the en passant square is behind the pawn that just moved two squares, so its row follows from the side to move
+        int enPassantY = enPassantX < 0 ? -1 : turn == Piece.Color.WHITE ? 2 : 5;
+        int halfmoveClock = buffer.get(offset + STATE_OFFSET + 2) & 0xFF;
+        int fullmoveNumber = (buffer.get(offset + STATE_OFFSET + 3) & 0xFF) | (buffer.get(offset + STATE_OFFSET + 4) & 0xFF) << 8;
+        position.setState(turn, state >>> 1, enPassantX, enPassantY, halfmoveClock, fullmoveNumber);
+    }
+}
@@ -0,0 +1,679 @@
+package chess.board;
+
+import chess.bitboard.BitboardMoves;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.util.Arrays;
+
+// headless chess position: pieces, side to move, castling rights, en passant square and clocks
+// does not depend on processing, so it can be used for move generation without a sketch
+public class Position {
+    // castling rights flags
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    // squares where x + y is odd, a1 and h8 are dark
+    private static final long DARK_SQUARES = 0x55AA55AA55AA55AAL;
+
+    public final int boardSize;
+
+    private Piece[][] pieces;
+    private Piece.Color turn = Piece.Color.WHITE;
+    private int castlingRights;
+    private int enPassantX = -1;
+    private int enPassantY = -1;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+
+    // king squares indexed by color, -1 when the color has no king
+    private final int[] kingX = {-1, -1};
+    private final int[] kingY = {-1, -1};
+
+    // bitboards are only kept for the standard 8x8 board, bit index of a square is y * 8 + x
+    private final long[] bitboards = new long[12];
+    private final long[] colorBitboards = new long[2];
+
+    // undo stack, per made move the moved piece, the captured piece and the packed castling rights,
+    // en passant square and halfmove clock from before the move
+    private Piece[] undoMoved = new Piece[256];
+    private Piece[] undoCaptured = new Piece[256];
+    private long[] undoState = new long[256];
+    // zobrist key before every move on the undo stack, used for repetition detection
+    private long[] keyHistory = new long[256];
+    private int undoSize;
+
+    // zobrist key of the position, only kept for positions with bitboards
+    private long key;
+    // zobrist key of the pawns alone, for the pawn hash of the evaluation
+    private long pawnKey;
+    // sums of PieceSquareTables over all pieces and the game phase, kept like the key
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+
+    // told about every square change, not copied with the position
+    private SquareListener listener;
+
+    public Position(int boardSize) {
+        this.boardSize = boardSize;
+        clear();
+    }
+
+    // copy of another position including its undo stack, pieces are shared but the arrays are not
+    public Position(Position other) {
+        this.boardSize = other.boardSize;
+        this.pieces = new Piece[boardSize][];
+        for (int i = 0; i < boardSize; i++) {
+            this.pieces[i] = other.pieces[i].clone();
+        }
+        System.arraycopy(other.bitboards, 0, bitboards, 0, bitboards.length);
+        System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+        System.arraycopy(other.kingX, 0, kingX, 0, 2);
+        System.arraycopy(other.kingY, 0, kingY, 0, 2);
+        this.turn = other.turn;
+        this.castlingRights = other.castlingRights;
+        this.enPassantX = other.enPassantX;
+        this.enPassantY = other.enPassantY;
+        this.halfmoveClock = other.halfmoveClock;
+        this.fullmoveNumber = other.fullmoveNumber;
+        this.undoMoved = other.undoMoved.clone();
+        this.undoCaptured = other.undoCaptured.clone();
+        this.undoState = other.undoState.clone();
+        this.keyHistory = other.keyHistory.clone();
+        this.undoSize = other.undoSize;
+        this.key = other.key;
+        this.pawnKey = other.pawnKey;
+        this.middlegameScore = other.middlegameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+    }
+
+    // remove all pieces and reset the state
+    public void clear() {
+        if (pieces == null) {
+            pieces = new Piece[boardSize][boardSize];
+        }
+        for (int i = 0; i < boardSize; i++) {
+            Arrays.fill(pieces[i], Piece.NONE);
+        }
+        Arrays.fill(bitboards, 0);
+        Arrays.fill(colorBitboards, 0);
+        Arrays.fill(kingX, -1);
+        Arrays.fill(kingY, -1);
+        turn = Piece.Color.WHITE;
+        castlingRights = 0;
+        enPassantX = -1;
+        enPassantY = -1;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        undoSize = 0;
+        key = 0;
+        pawnKey = 0;
+        middlegameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        if (listener != null) {
+            listener.cleared();
+        }
+    }
+
+    // load chess position from fen string, throws IllegalArgumentException on malformed input
+    public void loadFen(String fen) {
+        Fen.load(this, fen);
+    }
+
+    // get fen from position
+    public String getFen() {
+        return Fen.toFen(this);
+    }
+
+    // get piece from board at position x, y if x and y is not in the board return null
+    public Piece getPiece(int x, int y) {
+        if (x < 0 || y < 0 || x >= boardSize || y >= boardSize) {
+            return null;
+        }
+        return pieces[x][y];
+    }
+
+    // set piece on board at position x, y
+    public void setPiece(Piece piece, int x, int y) {
+        if (x < 0 || y < 0 || x >= boardSize || y >= boardSize) {
+            return;
+        }
+        if (hasBitboards()) {
+            updateSquare(pieces[x][y], piece, y * 8 + x);
+        }
+        updateKingSquare(pieces[x][y], piece, x, y);
+        pieces[x][y] = piece;
+    }
+
+    // keep track of the king squares so they never have to be searched
+    private void updateKingSquare(Piece oldPiece, Piece newPiece, int x, int y) {
+        if (oldPiece != null && oldPiece.isKing()) {
+            int color = oldPiece.color.ordinal() - 1;
+            if (kingX[color] == x && kingY[color] == y) {
+                kingX[color] = -1;
+                kingY[color] = -1;
+            }
+        }
+        if (newPiece != null && newPiece.isKing() && !newPiece.isNone()) {
+            int color = newPiece.color.ordinal() - 1;
+            kingX[color] = x;
+            kingY[color] = y;
+        }
+    }
+
+    // square of the king of the color, -1 when there is none
+    public int getKingX(Piece.Color color) {
+        return kingX[color.ordinal() - 1];
+    }
+
+    public int getKingY(Piece.Color color) {
+        return kingY[color.ordinal() - 1];
+    }
+
+    // move the square from the bitboards, keys and scores of the old piece to those of the new one
+    private void updateSquare(Piece oldPiece, Piece newPiece, int square) {
+        long bit = 1L << square;
+        if (!oldPiece.isNone()) {
+            int index = oldPiece.index();
+            bitboards[index] &= ~bit;
+            colorBitboards[oldPiece.color.ordinal() - 1] &= ~bit;
+            key ^= Zobrist.PIECES[index][square];
+            if (oldPiece.isPawn()) {
+                pawnKey ^= Zobrist.PIECES[index][square];
+            }
+            middlegameScore -= PieceSquareTables.MIDDLEGAME[index][square];
+            endgameScore -= PieceSquareTables.ENDGAME[index][square];
+            phase -= PieceSquareTables.PHASE[index];
+        }
+        if (newPiece != null && !newPiece.isNone()) {
+            int index = newPiece.index();
+            bitboards[index] |= bit;
+            colorBitboards[newPiece.color.ordinal() - 1] |= bit;
+            key ^= Zobrist.PIECES[index][square];
+            if (newPiece.isPawn()) {
+                pawnKey ^= Zobrist.PIECES[index][square];
+            }
+            middlegameScore += PieceSquareTables.MIDDLEGAME[index][square];
+            endgameScore += PieceSquareTables.ENDGAME[index][square];
+            phase += PieceSquareTables.PHASE[index];
+        }
+        if (listener != null) {
+            listener.squareChanged(square, oldPiece, newPiece == null ? Piece.NONE : newPiece);
+        }
+    }
+
+    // set the listener told about square changes, null to remove it, only positions with bitboards report changes
+    public void setListener(SquareListener listener) {
+        this.listener = listener;
+    }
+
+    // zobrist key computed from scratch, makeMove and setPiece keep it up to date incrementally
+    public long computeKey() {
+        if (!hasBitboards()) {
+            return 0;
+        }
+        long key = 0;
+        for (int x = 0; x < 8; x++) {
+            for (int y = 0; y < 8; y++) {
+                Piece piece = pieces[x][y];
+                if (piece != null && !piece.isNone()) {
+                    key ^= Zobrist.PIECES[piece.index()][y * 8 + x];
+                }
+            }
+        }
+        return key ^ stateKey();
+    }
+
+    // part of the key for side to move, castling rights and en passant file
+    private long stateKey() {
+        long key = Zobrist.CASTLING[castlingRights];
+        if (enPassantX >= 0) {
+            key ^= Zobrist.EN_PASSANT_FILE[enPassantX];
+        }
+        if (turn == Piece.Color.BLACK) {
+            key ^= Zobrist.BLACK_TO_MOVE;
+        }
+        return key;
+    }
+
+    // find first pieces of type and color on the board and return its position
+    public int[] findPiece(Piece.Type type, Piece.Color color) {
+        if (type == Piece.Type.KING && color != Piece.Color.NONE) {
+            int index = color.ordinal() - 1;
+            return kingX[index] < 0 ? null : new int[]{kingX[index], kingY[index]};
+        }
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
+                if (pieces[i][j].type == type && pieces[i][j].color == color) {
+                    return new int[]{i, j};
+                }
+            }
+        }
+        return null;
+    }
+
+    // check if the color is in check and has no legal move left
+    public boolean isCheckMate(Piece.Color forColor) {
+        return isCheck(forColor) && !hasAnyLegalMove(forColor);
+    }
+
+    public boolean isCheck(Piece.Color color) {
+        if (hasBitboards()) {
+            return BitboardMoves.isCheck(this, color);
+        }
+        return kingX[color.ordinal() - 1] >= 0 && LegalMoves.isCheck(kingX[color.ordinal() - 1], kingY[color.ordinal() - 1], color, this);
+    }
+
+    // stops at the first legal move instead of generating all of them
+    public boolean hasAnyLegalMove(Piece.Color color) {
+        if (hasBitboards()) {
+            return BitboardMoves.hasAnyLegalMove(this, color);
+        }
+        return LegalMoves.hasAnyLegalMove(this, color);
+    }
+
+    // status of the game for the side to move, a mate on the last move before a draw rule still counts as mate
+    public GameStatus getStatus() {
+        if (!hasAnyLegalMove(turn)) {
+            return isCheck(turn) ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (halfmoveClock >= 100) {
+            return GameStatus.FIFTY_MOVE_RULE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.THREEFOLD_REPETITION;
+        }
+        if (isInsufficientMaterial()) {
+            return GameStatus.INSUFFICIENT_MATERIAL;
+        }
+        return GameStatus.ONGOING;
+    }
+
+    // no side can mate: bare kings, a single minor piece, or only bishops all on squares of one color
+    public boolean isInsufficientMaterial() {
+        if (!hasBitboards()) {
+            return isInsufficientMaterialScan();
+        }
+        long heavy = 0;
+        long knights = 0;
+        long bishops = 0;
+        for (int color = 0; color < 2; color++) {
+            int offset = color * 6;
+            heavy |= bitboards[offset] | bitboards[offset + 3] | bitboards[offset + 4];
+            knights |= bitboards[offset + 1];
+            bishops |= bitboards[offset + 2];
+        }
+        if (heavy != 0) return false;
+        if (Long.bitCount(knights | bishops) <= 1) return true;
+        return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+    }
+
+    // same rule as isInsufficientMaterial for boards without bitboards
+    private boolean isInsufficientMaterialScan() {
+        int minors = 0;
+        int knights = 0;
+        int bishopSquareColors = 0;
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
+                Piece piece = pieces[i][j];
+                if (piece.isNone() || piece.isKing()) continue;
+                if (piece.isPawn() || piece.isRook() || piece.isQueen()) return false;
+                minors++;
+                if (piece.isKnight()) knights++;
+                else bishopSquareColors |= 1 << ((i + j) & 1);
+            }
+        }
+        return minors <= 1 || (knights == 0 && bishopSquareColors != 3);
+    }
+
+    // apply a legal move to the position and pass the turn to the other side
+    // the state needed to take the move back is pushed on the undo stack, nothing is allocated
+    public void makeMove(Move move) {
+        makeMove(move.fromX, move.fromY, move.toX, move.toY, move.flags, move.referenceX, move.referenceY, move.promotion);
+    }
+
+    // apply an encoded move, only for the 8x8 board
+    public void makeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int reference = Move.reference(move);
+        makeMove(from & 7, from >>> 3, to & 7, to >>> 3, Move.flags(move), reference & 7, reference >>> 3, Move.promotion(move));
+    }
+
+    // take back the last move made with makeMove, the move must be the same one
+    public void unmakeMove(Move move) {
+        unmakeMove(move.fromX, move.fromY, move.toX, move.toY, move.flags, move.referenceX, move.referenceY);
+    }
+
+    public void unmakeMove(int move) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int reference = Move.reference(move);
+        unmakeMove(from & 7, from >>> 3, to & 7, to >>> 3, Move.flags(move), reference & 7, reference >>> 3);
+    }
+
+    private void makeMove(int fromX, int fromY, int toX, int toY, int flags, int referenceX, int referenceY, Piece.Type promotion) {
+        Piece piece = pieces[fromX][fromY];
+        Piece captured = (flags & Move.EN_PASSANT) != 0 ? pieces[referenceX][referenceY] : pieces[toX][toY];
+        pushUndo(piece, captured);
+        boolean hashed = hasBitboards();
+        if (hashed) {
+            key ^= stateKey();
+        }
+
+        if ((flags & Move.EN_PASSANT) != 0) {
+            setPiece(Piece.NONE, referenceX, referenceY);
+        }
+
+        if ((flags & Move.CASTLE) != 0) {
+            int rookX = referenceX < fromX ? toX + 1 : toX - 1;
+            setPiece(getPiece(referenceX, referenceY), rookX, fromY);
+            setPiece(Piece.NONE, referenceX, referenceY);
+        }
+
+        if ((flags & Move.PROMOTION) != 0) {
+            setPiece(Piece.of(piece.color, promotion), toX, toY);
+        } else {
+            setPiece(piece, toX, toY);
+        }
+        setPiece(Piece.NONE, fromX, fromY);
+
+        castlingRights &= ~castlingRightsLostAt(fromX, fromY);
+        castlingRights &= ~castlingRightsLostAt(toX, toY);
+
+        if ((flags & Move.DOUBLE_PAWN_PUSH) != 0) {
+            enPassantX = fromX;
+            enPassantY = (fromY + toY) / 2;
+        } else {
+            enPassantX = -1;
+            enPassantY = -1;
+        }
+
+        if (piece.isPawn() || !captured.isNone()) {
+            halfmoveClock = 0;
+        } else {
+            halfmoveClock++;
+        }
+
+        if (turn == Piece.Color.BLACK) {
+            fullmoveNumber++;
+        }
+        turn = turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
+
+        if (hashed) {
+            key ^= stateKey();
+        }
+    }
+
+    private void unmakeMove(int fromX, int fromY, int toX, int toY, int flags, int referenceX, int referenceY) {
+        undoSize--;
+        Piece piece = undoMoved[undoSize];
+        Piece captured = undoCaptured[undoSize];
+        long state = undoState[undoSize];
+
+        turn = turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
+        if (turn == Piece.Color.BLACK) {
+            fullmoveNumber--;
+        }
+
+        setPiece(piece, fromX, fromY);
+        if ((flags & Move.EN_PASSANT) != 0) {
+            setPiece(Piece.NONE, toX, toY);
+            setPiece(captured, referenceX, referenceY);
+        } else {
+            setPiece(captured, toX, toY);
+        }
+
+        if ((flags & Move.CASTLE) != 0) {
+            int rookX = referenceX < fromX ? toX + 1 : toX - 1;
+            setPiece(getPiece(rookX, fromY), referenceX, referenceY);
+            setPiece(Piece.NONE, rookX, fromY);
+        }
+
+        restoreState(state);
+    }
+
+    // pass the turn without moving, used by the engine for null move pruning, the side to move must not be in check
+    // the halfmove clock is reset so repetitions are never counted across a null move
+    public void makeNullMove() {
+        pushUndo(Piece.NONE, Piece.NONE);
+        boolean hashed = hasBitboards();
+        if (hashed) {
+            key ^= stateKey();
+        }
+        enPassantX = -1;
+        enPassantY = -1;
+        halfmoveClock = 0;
+        if (turn == Piece.Color.BLACK) {
+            fullmoveNumber++;
+        }
+        turn = turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
+        if (hashed) {
+            key ^= stateKey();
+        }
+    }
+
+    public void unmakeNullMove() {
+        undoSize--;
+        turn = turn == Piece.Color.WHITE ? Piece.Color.BLACK : Piece.Color.WHITE;
+        if (turn == Piece.Color.BLACK) {
+            fullmoveNumber--;
+        }
+        restoreState(undoState[undoSize]);
+    }
+
+    // restore castling rights, en passant square, halfmove clock and key from the undo entry on top of the stack
+    private void restoreState(long state) {
+        castlingRights = (int) (state & 0xF);
+        int enPassant = (int) ((state >>> 4) & 0xFFFF) - 1;
+        enPassantX = enPassant < 0 ? -1 : enPassant % boardSize;
+        enPassantY = enPassant < 0 ? -1 : enPassant / boardSize;
+        halfmoveClock = (int) (state >>> 20);
+        key = keyHistory[undoSize];
+    }
+
+    // number of moves on the undo stack
+    public int getUndoSize() {
+        return undoSize;
+    }
+
+    // save the state a move overwrites, the stack only allocates when it has to grow
+    private void pushUndo(Piece moved, Piece captured) {
+        if (undoSize == undoMoved.length) {
+            undoMoved = Arrays.copyOf(undoMoved, undoSize * 2);
+            undoCaptured = Arrays.copyOf(undoCaptured, undoSize * 2);
+            undoState = Arrays.copyOf(undoState, undoSize * 2);
+            keyHistory = Arrays.copyOf(keyHistory, undoSize * 2);
+        }
+        int enPassant = enPassantX < 0 ? 0 : enPassantY * boardSize + enPassantX + 1;
+        undoMoved[undoSize] = moved;
+        undoCaptured[undoSize] = captured;
+        undoState[undoSize] = castlingRights | ((long) enPassant << 4) | ((long) halfmoveClock << 20);
+        keyHistory[undoSize] = key;
+        undoSize++;
+    }
+
+    // zobrist key of the position, 0 for boards without bitboards
+    public long getKey() {
+        return key;
+    }
+
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    // material and piece square score from the white side, see PieceSquareTables
+    public int getMiddlegameScore() {
+        return middlegameScore;
+    }
+
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    // game phase from the pieces on the board, PieceSquareTables.MAX_PHASE at the start, can be higher after promotions
+    public int getPhase() {
+        return phase;
+    }
+
+    // how often the current position occurred before, only positions since the last capture or pawn move
+    // with the same side to move can repeat
+    public int getRepetitionCount() {
+        int count = 0;
+        int limit = Math.min(halfmoveClock, undoSize);
+        for (int i = 2; i <= limit; i += 2) {
+            if (keyHistory[undoSize - i] == key) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // the position occurred for the third time
+    public boolean isThreefoldRepetition() {
+        return getRepetitionCount() >= 2;
+    }
+
+    // castling rights that are lost when a piece leaves or arrives at x, y
+    private int castlingRightsLostAt(int x, int y) {
+        int last = boardSize - 1;
+        if (y == last) {
+            if (x == kingStartX()) return WHITE_KINGSIDE | WHITE_QUEENSIDE;
+            if (x == last) return WHITE_KINGSIDE;
+            if (x == 0) return WHITE_QUEENSIDE;
+        } else if (y == 0) {
+            if (x == kingStartX()) return BLACK_KINGSIDE | BLACK_QUEENSIDE;
+            if (x == last) return BLACK_KINGSIDE;
+            if (x == 0) return BLACK_QUEENSIDE;
+        }
+        return 0;
+    }
+
+    // true when the position keeps bitboards, which requires the standard 8x8 board
+    public boolean hasBitboards() {
+        return boardSize == 8;
+    }
+
+    // bitboard of all pieces with the index from Piece.index()
+    public long getBitboard(int pieceIndex) {
+        return bitboards[pieceIndex];
+    }
+
+    public long getBitboard(Piece.Color color, Piece.Type type) {
+        return bitboards[(color.ordinal() - 1) * 6 + type.ordinal() - 1];
+    }
+
+    // bitboard of all pieces of the color
+    public long getColorBitboard(Piece.Color color) {
+        return colorBitboards[color.ordinal() - 1];
+    }
+
+    // bitboard of all pieces on the board
+    public long getOccupancy() {
+        return colorBitboards[0] | colorBitboards[1];
+    }
+
+    // file the kings start on, e file on a standard board
+    public int kingStartX() {
+        return boardSize / 2;
+    }
+
+    // row the pieces of the color start on
+    public int homeRow(Piece.Color color) {
+        return color == Piece.Color.WHITE ? boardSize - 1 : 0;
+    }
+
+    // getters and setters for the position state
+    public Piece.Color getTurn() {
+        return turn;
+    }
+
+    public void setTurn(Piece.Color turn) {
+        this.turn = turn;
+        key = computeKey();
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+        key = computeKey();
+    }
+
+    public boolean hasCastlingRights(int rights) {
+        return (castlingRights & rights) != 0;
+    }
+
+    public int getEnPassantX() {
+        return enPassantX;
+    }
+
+    public int getEnPassantY() {
+        return enPassantY;
+    }
+
+    public void setEnPassant(int x, int y) {
+        enPassantX = x;
+        enPassantY = y;
+        key = computeKey();
+    }
+
+    // set all state fields at once, used by the fen parser so the key is only updated once
+    void setState(Piece.Color turn, int castlingRights, int enPassantX, int enPassantY, int halfmoveClock, int fullmoveNumber) {
+        if (hasBitboards()) {
+            key ^= stateKey();
+        }
+        this.turn = turn;
+        this.castlingRights = castlingRights;
+        this.enPassantX = enPassantX;
+        this.enPassantY = enPassantY;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        if (hasBitboards()) {
+            key ^= stateKey();
+        }
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < boardSize; i++) {
+            for (int j = 0; j < boardSize; j++) {
+                String piece = pieces[j][i].toString();
+                // string should not be shorter than 6 chars
+                while (piece.length() < 6) {
+                    piece += " ";
+                }
+
+                sb.append(piece).append(" ");
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
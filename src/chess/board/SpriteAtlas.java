@@ -0,0 +1,306 @@
+package chess.board;
+
+import chess.piece.Piece;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// the piece textures scaled once to the square size and packed side by side into one image, cell i holds the piece
+// with Piece.index() i; a piece is drawn by copying its cell at its own size, so the 480px sources are never scaled
+// while drawing a frame and looking up a piece is an array access
+// loadAsync decodes the textures on a pool of threads while frames are drawn with placeholder glyphs; with a cache
+// directory the scaled textures are also written there as raw ARGB pixels per cell size and read back on the next
+// start instead of decoding the PNGs
+public class SpriteAtlas {
+    // system property naming the cache directory used by Board
+    public static final String CACHE_PROPERTY = "chess.textureCache";
+
+    private static final int PIECES = 12;
+    private static final String TYPE_LETTERS = "pnbrqk";
+    private static final int CACHE_MAGIC = 0x43485458;
+    private static final int CACHE_HEADER_BYTES = 24;
+
+    private final PApplet sketch;
+    private final String directory;
+    private Path cacheDirectory;
+
+    // decoded 480px textures, only loaded when a size is not in the cache
+    private final PImage[] sources = new PImage[PIECES];
+    // scaled textures and the cell size they were made for, replaced as a whole so drawing never sees half of them
+    private volatile Cells cells;
+    // size placeholders are drawn with until the textures are ready
+    private volatile int cellSize;
+
+    // statistics of the last load
+    private volatile long loadNanos;
+    private volatile boolean loadedFromCache;
+    private volatile int loadThreads;
+
+    // the textures named like pw480.png, type letter and color letter, in the directory are loaded by loadAsync or
+    // resize, not here
+    public SpriteAtlas(PApplet sketch, String directory) {
+        this.sketch = sketch;
+        this.directory = directory;
+    }
+
+    // directory for scaled textures, null for none
+    public void setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    // make the textures of the cell size on background threads, the future completes once they are drawn
+    public CompletableFuture<SpriteAtlas> loadAsync(int cellSize, int threads) {
+        checkCellSize(cellSize);
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, was " + threads);
+        }
+        this.cellSize = cellSize;
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "texture-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        // the steps are chained instead of waiting on each other, so even a single thread never blocks itself
+        return CompletableFuture.supplyAsync(() -> readCache(cellSize), pool)
+                .thenCompose(cached -> {
+                    loadedFromCache = cached != null;
+                    if (cached != null) {
+                        loadThreads = 1;
+                        return CompletableFuture.completedFuture(cached);
+                    }
+                    loadThreads = threads;
+                    PImage[] sprites = new PImage[PIECES];
+                    CompletableFuture<?>[] tasks = new CompletableFuture<?>[PIECES];
+                    for (int i = 0; i < PIECES; i++) {
+                        int index = i;
+                        tasks[i] = CompletableFuture.runAsync(() -> sprites[index] = scale(index, cellSize), pool);
+                    }
+                    return CompletableFuture.allOf(tasks).thenApply(done -> {
+                        writeCache(cellSize, sprites);
+                        return sprites;
+                    });
+                })
+                .thenApply(sprites -> {
+                    publish(cellSize, sprites, start);
+                    return this;
+                })
+                .whenComplete((atlas, error) -> pool.shutdown());
+    }
+
+    // make the textures of the cell size on the calling thread, nothing is done when the size did not change
+    public void resize(int cellSize) {
+        checkCellSize(cellSize);
+        Cells current = cells;
+        if (current != null && current.size == cellSize) {
+            return;
+        }
+        this.cellSize = cellSize;
+        load(cellSize);
+    }
+
+    public boolean isReady() {
+        return cells != null;
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    // the scaled texture of the piece, null for Piece.NONE and before the textures are ready
+    public PImage getSprite(Piece piece) {
+        Cells current = cells;
+        return piece.isNone() || current == null ? null : current.sprites[piece.index()];
+    }
+
+    // draw the piece with its top left corner at x, y in the current image mode CORNER, as a lettered disc while the
+    // textures are not ready
+    public void draw(PGraphics graphics, Piece piece, float x, float y) {
+        Cells current = cells;
+        if (current == null) {
+            drawPlaceholder(graphics, piece, x, y, cellSize);
+            return;
+        }
+        int size = current.size;
+        int u = piece.index() * size;
+        graphics.image(current.atlas, x, y, size, size, u, 0, u + size, size);
+    }
+
+    // nanoseconds the last load took, whether it was read from the cache and on how many threads it decoded
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public boolean isLoadedFromCache() {
+        return loadedFromCache;
+    }
+
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    private static void drawPlaceholder(PGraphics graphics, Piece piece, float x, float y, float size) {
+        boolean white = piece.isWhite();
+        graphics.stroke(128);
+        graphics.strokeWeight(Math.max(1, size / 40));
+        graphics.fill(white ? 245 : 30);
+        graphics.ellipse(x + size / 2, y + size / 2, size * 0.7f, size * 0.7f);
+        graphics.fill(white ? 30 : 245);
+        graphics.textAlign(PConstants.CENTER, PConstants.CENTER);
+        graphics.textSize(size * 0.4f);
+        graphics.text(Character.toUpperCase(piece.toFen()), x + size / 2, y + size / 2);
+    }
+
+    // read the cells from the cache or decode and scale the sources on the calling thread
+    private void load(int cellSize) {
+        long start = System.nanoTime();
+        PImage[] sprites = readCache(cellSize);
+        loadedFromCache = sprites != null;
+        loadThreads = 1;
+        if (sprites == null) {
+            sprites = new PImage[PIECES];
+            for (int i = 0; i < PIECES; i++) {
+                sprites[i] = scale(i, cellSize);
+            }
+            writeCache(cellSize, sprites);
+        }
+        publish(cellSize, sprites, start);
+    }
+
+    // pack the scaled textures into the atlas and make them visible to drawing
+    private void publish(int cellSize, PImage[] sprites, long start) {
+        PImage atlas = sketch.createImage(cellSize * PIECES, cellSize, PConstants.ARGB);
+        for (int i = 0; i < PIECES; i++) {
+            atlas.set(i * cellSize, 0, sprites[i]);
+        }
+        loadNanos = System.nanoTime() - start;
+        cells = new Cells(atlas, sprites, cellSize);
+    }
+
+    // decode the source texture when it is not yet and return a copy scaled to the cell size
+    private PImage scale(int index, int cellSize) {
+        PImage source = sources[index];
+        if (source == null) {
+            String path = directory + "/" + TYPE_LETTERS.charAt(index % 6) + (index < 6 ? 'w' : 'b') + "480.png";
+            source = sketch.loadImage(path);
+            if (source == null) {
+                throw new IllegalArgumentException("Cannot load piece texture " + path);
+            }
+            sources[index] = source;
+        }
+        PImage sprite = source.copy();
+        sprite.resize(cellSize, cellSize);
+        return sprite;
+    }
+
+    // cache files are a header of magic, cell size, piece count, 4 bytes of padding and a stamp of the sources,
+    // followed by the pixels of every cell as big endian ARGB ints
+    private Path cacheFile(int cellSize) {
+        return cacheDirectory.resolve("pieces-" + cellSize + ".argb");
+    }
+
+    // sizes and modification times of the sources, a cache made from other sources is not used
+    private long sourceStamp() throws IOException {
+        long stamp = 17;
+        for (int i = 0; i < PIECES; i++) {
+            Path path = Paths.get(sketch.sketchPath(directory + "/" + TYPE_LETTERS.charAt(i % 6) + (i < 6 ? 'w' : 'b') + "480.png"));
+            stamp = stamp * 31 + Files.size(path);
+            stamp = stamp * 31 + Files.getLastModifiedTime(path).toMillis();
+        }
+        return stamp;
+    }
+
+    // the cached cells of the size, null when there is no cache, no file or an outdated one
+    private PImage[] readCache(int cellSize) {
+        if (cacheDirectory == null) {
+            return null;
+        }
+        Path file = cacheFile(cellSize);
+        long pixels = (long) cellSize * cellSize;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != CACHE_HEADER_BYTES + PIECES * pixels * 4) {
+                return null;
+            }
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (bytes.getInt(0) != CACHE_MAGIC || bytes.getInt(4) != cellSize || bytes.getInt(8) != PIECES
+                    || bytes.getLong(16) != sourceStamp()) {
+                return null;
+            }
+            bytes.position(CACHE_HEADER_BYTES);
+            IntBuffer ints = bytes.slice().asIntBuffer();
+            PImage[] sprites = new PImage[PIECES];
+            for (int i = 0; i < PIECES; i++) {
+                PImage sprite = sketch.createImage(cellSize, cellSize, PConstants.ARGB);
+                sprite.loadPixels();
+                ints.get(sprite.pixels);
+                sprite.updatePixels();
+                sprites[i] = sprite;
+            }
+            return sprites;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // a cache that cannot be written only costs the decoding on the next start, so the error is reported and ignored
+    private void writeCache(int cellSize, PImage[] sprites) {
+        if (cacheDirectory == null) {
+            return;
+        }
+        Path file = cacheFile(cellSize);
+        try {
+            Files.createDirectories(cacheDirectory);
+            ByteBuffer buffer = ByteBuffer.allocate(CACHE_HEADER_BYTES + PIECES * cellSize * cellSize * 4);
+            buffer.putInt(CACHE_MAGIC).putInt(cellSize).putInt(PIECES).putInt(0).putLong(sourceStamp());
+            for (PImage sprite : sprites) {
+                sprite.loadPixels();
+                buffer.asIntBuffer().put(sprite.pixels, 0, cellSize * cellSize);
+                buffer.position(buffer.position() + cellSize * cellSize * 4);
+            }
+            buffer.flip();
+            Path temporary = cacheDirectory.resolve(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Texture cache " + file + " not written: " + e.getMessage());
+        }
+    }
+
+    private static void checkCellSize(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Cell size must be at least 1, was " + cellSize);
+        }
+    }
+
+    // the atlas image with the scaled textures it was made from
+    private static final class Cells {
+        final PImage atlas;
+        final PImage[] sprites;
+        final int size;
+
+        Cells(PImage atlas, PImage[] sprites, int size) {
+            this.atlas = atlas;
+            this.sprites = sprites;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package chess.board;
+
+import chess.piece.Piece;
+
+// told about every change of a square of a position with bitboards, for state that is kept incrementally outside of
+// the position like the accumulator of a neural network evaluation
+public interface SquareListener {
+    // the piece on the square, y * 8 + x, changed from the old to the new piece, either may be Piece.NONE
+    void squareChanged(int square, Piece oldPiece, Piece newPiece);
+
+    // all pieces were removed at once by Position.clear()
+    void cleared();
+}
@@ -0,0 +1,44 @@
+package chess.board;
+
+// random keys for zobrist hashing of 8x8 positions, generated from a fixed seed so keys are the same in every run
+public final class Zobrist {
+    // indexed by Piece.index() and square y * 8 + x
+    public static final long[][] PIECES = new long[12][64];
+    // indexed by the castling rights flags of Position
+    public static final long[] CASTLING = new long[16];
+    public static final long[] EN_PASSANT_FILE = new long[8];
+    public static final long BLACK_TO_MOVE;
+
+    private static long seed = 0x3C6EF372FE94F82BL;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                PIECES[piece][square] = nextRandom();
+            }
+        }
+        // castling keys are combined from one key per right so changing one right flips one key
+        long[] rights = {nextRandom(), nextRandom(), nextRandom(), nextRandom()};
+        for (int i = 0; i < 16; i++) {
+            for (int right = 0; right < 4; right++) {
+                if ((i & (1 << right)) != 0) {
+                    CASTLING[i] ^= rights[right];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = nextRandom();
+        }
+        BLACK_TO_MOVE = nextRandom();
+    }
+
+    private Zobrist() {
+    }
+
+    private static long nextRandom() {
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -0,0 +1,23 @@
+package chess.book;
+
+import chess.piece.Move;
+
+// one move of a book position with its weight
+public class BookEntry {
+    // encoded legal move of the position
+    public final int move;
+    public final int weight;
+    public final int learn;
+
+    public BookEntry(int move, int weight, int learn) {
+        this.move = move;
+        this.weight = weight;
+        this.learn = learn;
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return Move.toUci(move) + " weight " + weight;
+    }
+}
@@ -0,0 +1,166 @@
+package chess.book;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Polyglot .bin opening book read through a memory-mapped file, nothing of it is copied to the heap
+// entries are 16 bytes big endian: key, move, weight and learn, sorted by the key as an unsigned number,
+// so a probe is a binary search of about 20 reads even for large books
+// lookups only read the mapping and may run on any number of threads
+public class PolyglotBook implements Closeable {
+    public static final int ENTRY_BYTES = 16;
+
+    private static final Piece.Type[] PROMOTIONS = {Piece.Type.NONE, Piece.Type.KNIGHT, Piece.Type.BISHOP, Piece.Type.ROOK, Piece.Type.QUEEN};
+
+    private final FileChannel channel;
+    private final ByteBuffer entries;
+    private final int count;
+    private final PolyglotKeys keys;
+
+    private PolyglotBook(FileChannel channel, ByteBuffer entries, PolyglotKeys keys) {
+        this.channel = channel;
+        this.entries = entries;
+        this.count = entries.capacity() / ENTRY_BYTES;
+        this.keys = keys;
+    }
+
+    public static PolyglotBook open(Path path) throws IOException {
+        return open(path, PolyglotKeys.standard());
+    }
+
+    public static PolyglotBook open(Path path, PolyglotKeys keys) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        if (size % ENTRY_BYTES != 0 || size > Integer.MAX_VALUE - ENTRY_BYTES) {
+            channel.close();
+            throw new IllegalArgumentException(path + " is not a Polyglot book of at most 2 GB, it has " + size + " bytes");
+        }
+        return new PolyglotBook(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size), keys);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public PolyglotKeys getKeys() {
+        return keys;
+    }
+
+    // book moves of the position with their weights, in the order of the book, empty when the position is not in it
+    // entries whose move is not legal in the position are skipped
+    public List<BookEntry> getEntries(Position position) {
+        List<BookEntry> result = new ArrayList<>();
+        long key = keys.key(position);
+        int[] moves = new int[Move.MAX_MOVES];
+        for (int index = find(key); index < count && entries.getLong(index * ENTRY_BYTES) == key; index++) {
+            int offset = index * ENTRY_BYTES;
+            int move = toMove(position, entries.getShort(offset + 8) & 0xFFFF, moves);
+            if (move != Move.NONE) {
+                result.add(new BookEntry(move, entries.getShort(offset + 10) & 0xFFFF, entries.getInt(offset + 12)));
+            }
+        }
+        return result;
+    }
+
+    // the move with the highest weight, Move.NONE when the position is not in the book
+    public int bestMove(Position position) {
+        int best = Move.NONE;
+        int bestWeight = -1;
+        for (BookEntry entry : getEntries(position)) {
+            if (entry.weight > bestWeight) {
+                best = entry.move;
+                bestWeight = entry.weight;
+            }
+        }
+        return best;
+    }
+
+    // a move picked with a probability proportional to its weight, Move.NONE when the position is not in the book
+    // moves of weight 0 are never picked unless every move has weight 0
+    public int weightedMove(Position position, Random random) {
+        List<BookEntry> found = getEntries(position);
+        if (found.isEmpty()) {
+            return Move.NONE;
+        }
+        long total = 0;
+        for (BookEntry entry : found) {
+            total += entry.weight;
+        }
+        if (total == 0) {
+            return found.get(random.nextInt(found.size())).move;
+        }
+        long pick = (long) (random.nextDouble() * total);
+        for (BookEntry entry : found) {
+            pick -= entry.weight;
+            if (pick < 0) {
+                return entry.move;
+            }
+        }
+        return found.get(found.size() - 1).move;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // index of the first entry with the key or a larger one
+    private int find(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(entries.getLong(middle * ENTRY_BYTES), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // the legal move for a Polyglot move: to file in bits 0-2, to row 3-5, from file 6-8, from row 9-11 with row 0 the
+    // first rank, promotion 12-14; castling is written as the king taking its own rook
+    static int toMove(Position position, int bookMove, int[] moves) {
+        int to = (7 - ((bookMove >>> 3) & 7)) * 8 + (bookMove & 7);
+        int from = (7 - ((bookMove >>> 9) & 7)) * 8 + ((bookMove >>> 6) & 7);
+        int promotion = (bookMove >>> 12) & 7;
+        if (promotion >= PROMOTIONS.length) {
+            return Move.NONE;
+        }
+        int count = BitboardMoves.generate(position, from, moves);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            boolean castle = Move.hasFlags(move, Move.CASTLE);
+            if ((castle ? Move.reference(move) : Move.to(move)) == to && Move.promotion(move) == PROMOTIONS[promotion]) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    // Polyglot form of an encoded move, see toMove
+    static int toBookMove(int move) {
+        int from = Move.from(move);
+        int to = Move.hasFlags(move, Move.CASTLE) ? Move.reference(move) : Move.to(move);
+        int promotion = 0;
+        for (int i = 1; i < PROMOTIONS.length; i++) {
+            if (Move.promotion(move) == PROMOTIONS[i]) {
+                promotion = i;
+            }
+        }
+        return (to & 7) | (7 - (to >>> 3)) << 3 | (from & 7) << 6 | (7 - (from >>> 3)) << 9 | promotion << 12;
+    }
+}
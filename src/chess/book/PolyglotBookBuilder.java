@@ -0,0 +1,211 @@
+package chess.book;
+
+import chess.board.Position;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+import chess.pgn.PgnReplay;
+import chess.pgn.PgnReplayResult;
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// builds a Polyglot book from PGN games
+// the games are replayed in parallel by PgnReplay, every replay thread counts the moves of the opening plies in its
+// own map and the maps are merged once all games are read, so the threads never wait on each other
+// a move scores 2 for a win and 1 for a draw of the side that played it, games without a result are skipped,
+// moves played in fewer than minGames games or without any points are left out
+public class PolyglotBookBuilder {
+    private final PolyglotKeys keys;
+    private int maxPly = 40;
+    private int minGames = 3;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final Map<Entry, Entry> entries = new HashMap<>();
+
+    public PolyglotBookBuilder(PolyglotKeys keys) {
+        this.keys = keys;
+    }
+
+    // only moves of the first plies of every game are counted
+    public PolyglotBookBuilder setMaxPly(int maxPly) {
+        if (maxPly < 1) {
+            throw new IllegalArgumentException("Max ply must be at least 1, was " + maxPly);
+        }
+        this.maxPly = maxPly;
+        return this;
+    }
+
+    public PolyglotBookBuilder setMinGames(int minGames) {
+        if (minGames < 1) {
+            throw new IllegalArgumentException("Min games must be at least 1, was " + minGames);
+        }
+        this.minGames = minGames;
+        return this;
+    }
+
+    public PolyglotBookBuilder setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, was " + threads);
+        }
+        this.threads = threads;
+        return this;
+    }
+
+    // count the moves of all games of the reader, may be called for several files
+    public PgnReplayResult addGames(PgnReader reader) throws IOException {
+        List<Map<Entry, Entry>> threadEntries = Collections.synchronizedList(new ArrayList<>());
+        ThreadLocal<Map<Entry, Entry>> local = ThreadLocal.withInitial(() -> {
+            Map<Entry, Entry> map = new HashMap<>();
+            threadEntries.add(map);
+            return map;
+        });
+        PgnReplayResult result = new PgnReplay(threads).replay(reader, (game, position) -> count(game, position, local.get()));
+
+        for (Map<Entry, Entry> map : threadEntries) {
+            for (Entry entry : map.values()) {
+                Entry total = entries.putIfAbsent(entry, entry);
+                if (total != null) {
+                    total.games += entry.games;
+                    total.score += entry.score;
+                }
+            }
+        }
+        return result;
+    }
+
+    // positions and moves in the book so far
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    // write the book sorted by key, moves of a position by falling weight, and return the number of entries written
+    // weights are the scores, scaled down when the largest does not fit into 16 bits
+    public int write(Path path) throws IOException {
+        List<Entry> kept = new ArrayList<>();
+        long maxScore = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.games >= minGames && entry.score > 0) {
+                kept.add(entry);
+                maxScore = Math.max(maxScore, entry.score);
+            }
+        }
+        kept.sort((a, b) -> a.key != b.key ? Long.compareUnsigned(a.key, b.key) : Long.compare(b.score, a.score));
+        double scale = maxScore > 0xFFFF ? (double) 0xFFFF / maxScore : 1;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4096 * PolyglotBook.ENTRY_BYTES);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : kept) {
+                if (!buffer.hasRemaining()) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(entry.key);
+                buffer.putShort((short) entry.move);
+                buffer.putShort((short) Math.max(1, Math.round(entry.score * scale)));
+                buffer.putInt(0);
+            }
+            flush(channel, buffer);
+        }
+        return kept.size();
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // replay the first plies again and count every move with the points of the side that played it
+    private void count(PgnGame game, Position position, Map<Entry, Entry> map) {
+        String result = game.getResult();
+        if (result.equals(PgnGame.UNKNOWN_RESULT)) {
+            return;
+        }
+        int whiteScore = result.equals("1-0") ? 2 : result.equals("0-1") ? 0 : 1;
+
+        position.loadFen(game.getStartFen());
+        Entry probe = new Entry();
+        int plies = Math.min(maxPly, game.getMoveCount());
+        for (int i = 0; i < plies; i++) {
+            int move = game.getMove(i);
+            probe.key = keys.key(position);
+            probe.move = PolyglotBook.toBookMove(move);
+            Entry entry = map.get(probe);
+            if (entry == null) {
+                entry = new Entry();
+                entry.key = probe.key;
+                entry.move = probe.move;
+                map.put(entry, entry);
+            }
+            entry.games++;
+            entry.score += position.getTurn() == Piece.Color.WHITE ? whiteScore : 2 - whiteScore;
+            position.makeMove(move);
+        }
+    }
+
+    // a move of a position, equal by key and move
+    private static final class Entry {
+        long key;
+        int move;
+        int games;
+        long score;
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) o;
+            return key == other.key && move == other.move;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key * 31 + move);
+        }
+    }
+
+    // usage: PolyglotBookBuilder <book.bin> <games.pgn>... [--max-ply n] [--min-games n] [--threads n]
+    public static void main(String[] args) throws IOException {
+        PolyglotBookBuilder builder = new PolyglotBookBuilder(PolyglotKeys.standard());
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max-ply":
+                    builder.setMaxPly(Integer.parseInt(args[++i]));
+                    break;
+                case "--min-games":
+                    builder.setMinGames(Integer.parseInt(args[++i]));
+                    break;
+                case "--threads":
+                    builder.setThreads(Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    paths.add(args[i]);
+            }
+        }
+        if (paths.size() < 2) {
+            System.out.println("usage: PolyglotBookBuilder <book.bin> <games.pgn>... [--max-ply n] [--min-games n] [--threads n]");
+            return;
+        }
+
+        for (String pgn : paths.subList(1, paths.size())) {
+            try (PgnReader reader = PgnReader.open(Paths.get(pgn))) {
+                System.out.println(pgn + ": " + builder.addGames(reader));
+            }
+        }
+        int written = builder.write(Paths.get(paths.get(0)));
+        System.out.println(paths.get(0) + ": " + written + " entries of " + builder.getEntryCount() + " moves");
+    }
+}
@@ -0,0 +1,159 @@
+package chess.book;
+
+import chess.board.Fen;
+import chess.board.Position;
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static chess.bitboard.Bitboards.*;
+
+// position keys of the Polyglot book format, computed from its fixed table of 781 random numbers
+// the table ships as the resource polyglot-random64.txt next to this class, another one can be loaded from a file;
+// every table is checked against the published key of the start position, so a wrong or reordered table is rejected
+// instead of silently missing every book entry
+// the file is either the 781 numbers as big endian longs or any text with them as 0x prefixed hex literals in order,
+// for example the Random64 array of the format description
+public class PolyglotKeys {
+    public static final int RANDOM_COUNT = 781;
+    public static final long START_KEY = 0x463B96181691FC9CL;
+    // system property and classpath resource standard() looks for the table in
+    public static final String KEYS_PROPERTY = "chess.polyglot.keys";
+    public static final String KEYS_RESOURCE = "/chess/book/polyglot-random64.txt";
+
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+    private static final Pattern HEX = Pattern.compile("0[xX]([0-9a-fA-F]{16})");
+
+    private static volatile PolyglotKeys standard;
+
+    // indexed by Piece.index() and square y * 8 + x, already mapped to the Polyglot order
+    private final long[][] pieces = new long[12][64];
+    // indexed by the castling rights flags of Position, which have the same bit order as Polyglot
+    private final long[] castling = new long[16];
+    private final long[] enPassantFiles = new long[8];
+    private final long whiteToMove;
+
+    // the table is not checked, see load()
+    PolyglotKeys(long[] randoms) {
+        if (randoms.length != RANDOM_COUNT) {
+            throw new IllegalArgumentException("Polyglot needs " + RANDOM_COUNT + " random numbers, got " + randoms.length);
+        }
+        for (int piece = 0; piece < 12; piece++) {
+            // Polyglot orders the kinds black pawn, white pawn, black knight... and counts rows from the first rank
+            int kind = (piece % 6) * 2 + (piece < 6 ? 1 : 0);
+            for (int square = 0; square < 64; square++) {
+                int row = 7 - (square >>> 3);
+                pieces[piece][square] = randoms[64 * kind + 8 * row + (square & 7)];
+            }
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            for (int right = 0; right < 4; right++) {
+                if ((rights & (1 << right)) != 0) {
+                    castling[rights] ^= randoms[CASTLING_OFFSET + right];
+                }
+            }
+        }
+        System.arraycopy(randoms, EN_PASSANT_OFFSET, enPassantFiles, 0, 8);
+        whiteToMove = randoms[TURN_OFFSET];
+    }
+
+    public static PolyglotKeys load(Path path) throws IOException {
+        return parse(Files.readAllBytes(path), path.toString());
+    }
+
+    public static PolyglotKeys load(InputStream in, String name) throws IOException {
+        return parse(in.readAllBytes(), name);
+    }
+
+    // the table from the file named by the chess.polyglot.keys property, or else the one shipped as a resource
+    // throws IllegalStateException when the resource is missing from the classpath
+    public static PolyglotKeys standard() throws IOException {
+        PolyglotKeys keys = standard;
+        if (keys != null) {
+            return keys;
+        }
+        String property = System.getProperty(KEYS_PROPERTY);
+        if (property != null) {
+            keys = load(Paths.get(property));
+        } else {
+            try (InputStream in = PolyglotKeys.class.getResourceAsStream(KEYS_RESOURCE)) {
+                if (in == null) {
+                    throw new IllegalStateException("No Polyglot random table, " + KEYS_RESOURCE
+                            + " is not on the classpath, set -D" + KEYS_PROPERTY + "=<file>");
+                }
+                keys = load(in, KEYS_RESOURCE);
+            }
+        }
+        standard = keys;
+        return keys;
+    }
+
+    private static PolyglotKeys parse(byte[] bytes, String name) {
+        long[] randoms = new long[RANDOM_COUNT];
+        if (bytes.length == RANDOM_COUNT * 8) {
+            ByteBuffer.wrap(bytes).asLongBuffer().get(randoms);
+        } else {
+            Matcher matcher = HEX.matcher(new String(bytes, StandardCharsets.ISO_8859_1));
+            int count = 0;
+            while (matcher.find()) {
+                if (count == RANDOM_COUNT) {
+                    throw new IllegalArgumentException(name + " has more than " + RANDOM_COUNT + " random numbers");
+                }
+                randoms[count++] = Long.parseUnsignedLong(matcher.group(1), 16);
+            }
+            if (count != RANDOM_COUNT) {
+                throw new IllegalArgumentException(name + " has " + count + " random numbers, expected " + RANDOM_COUNT);
+            }
+        }
+
+        PolyglotKeys keys = new PolyglotKeys(randoms);
+        Position start = new Position(8);
+        start.loadFen(Fen.START);
+        long key = keys.key(start);
+        if (key != START_KEY) {
+            throw new IllegalArgumentException(name + " is not the Polyglot table, start key "
+                    + Long.toHexString(key) + " instead of " + Long.toHexString(START_KEY));
+        }
+        return keys;
+    }
+
+    // Polyglot key of an 8x8 position
+    // the en passant file only counts when a pawn of the side to move can actually capture there
+    public long key(Position position) {
+        long key = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            long bitboard = position.getBitboard(piece);
+            while (bitboard != 0) {
+                key ^= pieces[piece][first(bitboard)];
+                bitboard &= bitboard - 1;
+            }
+        }
+        key ^= castling[position.getCastlingRights() & 15];
+
+        int epX = position.getEnPassantX();
+        if (epX >= 0) {
+            boolean white = position.getTurn() == Piece.Color.WHITE;
+            // pawns of the side to move next to the pawn that just made the double step
+            long pawns = position.getBitboard(white ? 0 : 6);
+            long row = ROW_0 << (8 * (position.getEnPassantY() + (white ? 1 : -1)));
+            long adjacent = (epX > 0 ? FILE_A << (epX - 1) : 0) | (epX < 7 ? FILE_A << (epX + 1) : 0);
+            if ((pawns & row & adjacent) != 0) {
+                key ^= enPassantFiles[epX];
+            }
+        }
+        if (position.getTurn() == Piece.Color.WHITE) {
+            key ^= whiteToMove;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,204 @@
+package chess.engine;
+
+import chess.board.Position;
+import chess.engine.nnue.Network;
+import chess.tablebase.Tablebases;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// entry point of the engine, searches either block the caller or run on a background thread
+// the searched position is copied, so the caller may change its position while a search runs
+// with more than one thread, helper searches run the same position on a pool and share the transposition table
+public class Engine {
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ExecutorService helperPool;
+    private int threads = 1;
+    private final TranspositionTable table = new TranspositionTable(DEFAULT_HASH_MB);
+    // evaluate with this network instead of the handcrafted evaluation when set
+    private Network network;
+    // probed by every search when set
+    private Tablebases tablebases;
+
+    // search started with start(), null when none runs
+    private volatile Search current;
+
+    // search on the calling thread and return the result of the last finished iteration
+    public SearchResult search(Position position, SearchLimits limits) {
+        return search(position, limits, null);
+    }
+
+    public SearchResult search(Position position, SearchLimits limits, SearchListener listener) {
+        return run(newSearch(position, 0), newHelpers(position), limits, listener);
+    }
+
+    // search on the engine thread, a running search is stopped first
+    // stop() makes the future complete with the best move found so far, cancelling it discards the result
+    // the listener is told about the result before the future completes
+    public Future<SearchResult> start(Position position, SearchLimits limits, SearchListener listener) {
+        stop();
+        // every search copies the position here, the caller is free to change it once start() has returned
+        Search search = newSearch(position, 0);
+        Search[] helpers = newHelpers(position);
+        FutureTask<SearchResult> task = new FutureTask<SearchResult>(() -> {
+            try {
+                SearchResult result = run(search, helpers, limits, listener);
+                if (listener != null) {
+                    listener.onFinished(result);
+                }
+                return result;
+            } finally {
+                if (current == search) {
+                    current = null;
+                }
+            }
+        }) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                search.stop();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        current = search;
+        executor.execute(task);
+        return task;
+    }
+
+    // run the main search with its helpers and wait until the helpers have returned
+    private SearchResult run(Search main, Search[] helpers, SearchLimits limits, SearchListener listener) {
+        table.newSearch();
+        if (helpers.length == 0) {
+            return main.run(limits, listener);
+        }
+
+        List<Future<?>> futures = new ArrayList<>();
+        SearchLimits helperLimits = SearchLimits.depth(limits.getDepth());
+        for (Search helper : helpers) {
+            futures.add(helperPool.submit(() -> helper.run(helperLimits, null)));
+        }
+        main.setHelpers(helpers);
+        try {
+            return main.run(limits, listener);
+        } finally {
+            for (Search helper : helpers) {
+                helper.stop();
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Helper search failed", e.getCause());
+                }
+            }
+        }
+    }
+
+    // helper searches for the configured thread count, each on its own copy of the position
+    private Search[] newHelpers(Position position) {
+        Search[] helpers = new Search[threads - 1];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = newSearch(position, i + 1);
+        }
+        return helpers;
+    }
+
+    private Search newSearch(Position position, int id) {
+        Search search = new Search(position, table, id, network);
+        search.setTablebases(tablebases);
+        return search;
+    }
+
+    // stop the search started with start(), does nothing when none runs
+    public void stop() {
+        Search search = current;
+        if (search != null) {
+            search.stop();
+        }
+    }
+
+    public boolean isSearching() {
+        return current != null;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // number of threads searching in parallel, only change it while no search runs
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, was " + threads);
+        }
+        if (helperPool != null) {
+            helperPool.shutdown();
+            helperPool = null;
+        }
+        this.threads = threads;
+        if (threads > 1) {
+            helperPool = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "engine-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // reallocate the transposition table with the size in MB, its entries are lost, only while no search runs
+    public void setHashSize(int sizeMb) {
+        table.resize(sizeMb);
+    }
+
+    // table shared by all searches of this engine, for its size and hit statistics
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    // switch between the network, when not null, and the handcrafted evaluation, only while no search runs
+    // stored results of the other evaluation are cleared since their scores do not match
+    public void setNetwork(Network network) {
+        if (network != this.network) {
+            table.clear();
+        }
+        this.network = network;
+    }
+
+    public Network getNetwork() {
+        return network;
+    }
+
+    // play and score positions with few pieces by these tablebases, null to search them, only while no search runs
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+
+    // forget all stored results, for example before a new game
+    public void clearHash() {
+        table.clear();
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdown();
+        if (helperPool != null) {
+            helperPool.shutdown();
+        }
+    }
+}
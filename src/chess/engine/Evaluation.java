@@ -0,0 +1,258 @@
+package chess.engine;
+
+import chess.board.PieceSquareTables;
+import chess.board.Position;
+import chess.piece.Piece;
+
+import static chess.bitboard.Bitboards.*;
+
+// static evaluation in centipawns from the side to move
+// material and piece square values are kept by Position on every move, mobility and king safety are computed from
+// the bitboards, and pawn structure is cached in a pawn hash keyed by Position.getPawnKey()
+// every term has a middlegame and an endgame score which are blended by the game phase
+// one instance per search thread, evaluating does not allocate
+public class Evaluation implements Evaluator {
+    // indexed by the piece type offset inside the bitboards of one color, see Piece.index()
+    public static final int[] PIECE_VALUES = PieceSquareTables.MIDDLEGAME_VALUES;
+
+    // terms of the breakdown
+    public static final int MATERIAL_PST = 0;
+    public static final int MOBILITY = 1;
+    public static final int KING_SAFETY = 2;
+    public static final int PAWN_STRUCTURE = 3;
+    public static final String[] TERM_NAMES = {"material and pst", "mobility", "king safety", "pawn structure"};
+
+    // mobility per reachable square above the average count of knight, bishop, rook and queen
+    private static final int[] MOBILITY_AVERAGE = {0, 4, 7, 7, 13};
+    private static final int[] MOBILITY_MIDDLEGAME = {0, 4, 5, 2, 1};
+    private static final int[] MOBILITY_ENDGAME = {0, 4, 5, 4, 2};
+
+    // weight of an attacker of the squares around the enemy king, by piece type
+    private static final int[] KING_ATTACK_WEIGHTS = {0, 2, 2, 3, 5};
+    private static final int PAWN_SHIELD = 10;
+
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -15;
+    private static final int ISOLATED_ENDGAME = -15;
+    // passed pawn bonus by rows advanced from the home row
+    private static final int[] PASSED_MIDDLEGAME = {0, 0, 5, 10, 20, 35, 60, 0};
+    private static final int[] PASSED_ENDGAME = {0, 5, 10, 20, 40, 70, 120, 0};
+
+    // squares in front of a pawn on its own and the neighbouring files, indexed by color and square
+    private static final long[][] PASSED_MASKS = new long[2][64];
+    private static final long[] ADJACENT_FILES = new long[8];
+    // squares in front of the king where its own pawns shield it, indexed by color and square
+    private static final long[][] SHIELD_MASKS = new long[2][64];
+
+    private static final int PAWN_HASH_SIZE = 1 << 14;
+
+    static {
+        for (int x = 0; x < 8; x++) {
+            if (x > 0) ADJACENT_FILES[x] |= FILE_A << (x - 1);
+            if (x < 7) ADJACENT_FILES[x] |= FILE_A << (x + 1);
+        }
+        for (int square = 0; square < 64; square++) {
+            int x = square & 7;
+            int y = square >>> 3;
+            long files = ADJACENT_FILES[x] | (FILE_A << x);
+            for (int row = 0; row < 8; row++) {
+                long rowBits = ROW_0 << (row * 8);
+                if (row < y) PASSED_MASKS[0][square] |= files & rowBits;
+                if (row > y) PASSED_MASKS[1][square] |= files & rowBits;
+                if (row < y && row >= y - 2) SHIELD_MASKS[0][square] |= files & rowBits;
+                if (row > y && row <= y + 2) SHIELD_MASKS[1][square] |= files & rowBits;
+            }
+        }
+    }
+
+    // pawn hash, scores are stored as middlegame and endgame from the white side
+    // key 0 is the position without pawns whose score is 0, so the empty table is already right for it
+    private final long[] pawnKeys = new long[PAWN_HASH_SIZE];
+    private final int[] pawnMiddlegame = new int[PAWN_HASH_SIZE];
+    private final int[] pawnEndgame = new int[PAWN_HASH_SIZE];
+    private long pawnProbes;
+    private long pawnHits;
+
+    // middlegame and endgame score of every term from the white side, filled by every evaluate call
+    private final int[] middlegame = new int[4];
+    private final int[] endgame = new int[4];
+
+    @Override
+    public int evaluate(Position position) {
+        middlegame[MATERIAL_PST] = position.getMiddlegameScore();
+        endgame[MATERIAL_PST] = position.getEndgameScore();
+
+        evaluatePieces(position);
+        evaluatePawns(position);
+
+        int middlegameScore = middlegame[0] + middlegame[1] + middlegame[2] + middlegame[3];
+        int endgameScore = endgame[0] + endgame[1] + endgame[2] + endgame[3];
+        int score = blend(middlegameScore, endgameScore, position.getPhase());
+        return position.getTurn() == Piece.Color.WHITE ? score : -score;
+    }
+
+    // score of every term from the white side after blending, for tuning, allocates the result
+    public int[] breakdown(Position position) {
+        evaluate(position);
+        int[] terms = new int[TERM_NAMES.length];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = blend(middlegame[i], endgame[i], position.getPhase());
+        }
+        return terms;
+    }
+
+    // table of the terms with their middlegame, endgame and blended scores
+    public String describe(Position position) {
+        int[] terms = breakdown(position);
+        StringBuilder builder = new StringBuilder();
+        int total = 0;
+        for (int i = 0; i < terms.length; i++) {
+            builder.append(String.format("%-18s %6d %6d %6d%n", TERM_NAMES[i], middlegame[i], endgame[i], terms[i]));
+            total += terms[i];
+        }
+        builder.append(String.format("%-18s %20d%n", "total (white)", total));
+        builder.append("phase ").append(position.getPhase()).append(" of ").append(PieceSquareTables.MAX_PHASE);
+        return builder.toString();
+    }
+
+    // share of pawn structure lookups answered by the pawn hash
+    public double getPawnHashHitRate() {
+        return pawnProbes == 0 ? 0 : (double) pawnHits / pawnProbes;
+    }
+
+    private static int blend(int middlegame, int endgame, int phase) {
+        phase = Math.min(phase, PieceSquareTables.MAX_PHASE);
+        return (middlegame * phase + endgame * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+    }
+
+    // mobility of the pieces and attacks on the squares around the enemy king
+    private void evaluatePieces(Position position) {
+        long occupancy = position.getOccupancy();
+        int mobilityMiddlegame = 0;
+        int mobilityEndgame = 0;
+        int safetyMiddlegame = 0;
+
+        for (int us = 0; us < 2; us++) {
+            int them = 1 - us;
+            int sign = us == 0 ? 1 : -1;
+            long own = position.getColorBitboard(us == 0 ? Piece.Color.WHITE : Piece.Color.BLACK);
+            long enemyPawns = position.getBitboard(them * 6);
+            long enemyKing = position.getBitboard(them * 6 + 5);
+            long kingZone = enemyKing == 0 ? 0 : KING_ATTACKS[first(enemyKing)] | enemyKing;
+            // squares attacked by enemy pawns do not count as mobility
+            long unsafe = pawnAttacks(enemyPawns, them);
+
+            int attackers = 0;
+            int attackWeight = 0;
+            for (int type = 1; type < 5; type++) {
+                long pieces = position.getBitboard(us * 6 + type);
+                while (pieces != 0) {
+                    int square = first(pieces);
+                    pieces &= pieces - 1;
+                    long attacks = attacks(type, square, occupancy);
+                    int count = Long.bitCount(attacks & ~own & ~unsafe) - MOBILITY_AVERAGE[type];
+                    mobilityMiddlegame += sign * count * MOBILITY_MIDDLEGAME[type];
+                    mobilityEndgame += sign * count * MOBILITY_ENDGAME[type];
+                    if ((attacks & kingZone) != 0) {
+                        attackers++;
+                        attackWeight += KING_ATTACK_WEIGHTS[type];
+                    }
+                }
+            }
+
+            // one attacker is no danger, the penalty grows quickly with more of them
+            if (attackers >= 2) {
+                safetyMiddlegame += sign * Math.min(attackWeight * attackWeight * 2, 400);
+            }
+
+            long king = position.getBitboard(us * 6 + 5);
+            if (king != 0) {
+                long shield = SHIELD_MASKS[us][first(king)] & position.getBitboard(us * 6);
+                safetyMiddlegame += sign * Long.bitCount(shield) * PAWN_SHIELD;
+            }
+        }
+
+        middlegame[MOBILITY] = mobilityMiddlegame;
+        endgame[MOBILITY] = mobilityEndgame;
+        middlegame[KING_SAFETY] = safetyMiddlegame;
+        endgame[KING_SAFETY] = 0;
+    }
+
+    private static long attacks(int type, int square, long occupancy) {
+        switch (type) {
+            case 1:
+                return KNIGHT_ATTACKS[square];
+            case 2:
+                return bishopAttacks(square, occupancy);
+            case 3:
+                return rookAttacks(square, occupancy);
+            default:
+                return queenAttacks(square, occupancy);
+        }
+    }
+
+    // all squares attacked by the pawns, white pawns attack the row above which has the lower index
+    private static long pawnAttacks(long pawns, int color) {
+        if (color == 0) {
+            return ((pawns & ~FILE_A) >>> 9) | ((pawns & ~FILE_H) >>> 7);
+        }
+        return ((pawns & ~FILE_A) << 7) | ((pawns & ~FILE_H) << 9);
+    }
+
+    private void evaluatePawns(Position position) {
+        long pawnKey = position.getPawnKey();
+        int index = (int) pawnKey & (PAWN_HASH_SIZE - 1);
+        pawnProbes++;
+        if (pawnKeys[index] == pawnKey) {
+            pawnHits++;
+            middlegame[PAWN_STRUCTURE] = pawnMiddlegame[index];
+            endgame[PAWN_STRUCTURE] = pawnEndgame[index];
+            return;
+        }
+
+        int middlegameScore = 0;
+        int endgameScore = 0;
+        for (int us = 0; us < 2; us++) {
+            int sign = us == 0 ? 1 : -1;
+            long pawns = position.getBitboard(us * 6);
+            long enemyPawns = position.getBitboard((1 - us) * 6);
+
+            for (int x = 0; x < 8; x++) {
+                int count = Long.bitCount(pawns & (FILE_A << x));
+                if (count > 1) {
+                    middlegameScore += sign * (count - 1) * DOUBLED_MIDDLEGAME;
+                    endgameScore += sign * (count - 1) * DOUBLED_ENDGAME;
+                }
+            }
+
+            long remaining = pawns;
+            while (remaining != 0) {
+                int square = first(remaining);
+                remaining &= remaining - 1;
+                if ((pawns & ADJACENT_FILES[square & 7]) == 0) {
+                    middlegameScore += sign * ISOLATED_MIDDLEGAME;
+                    endgameScore += sign * ISOLATED_ENDGAME;
+                }
+                if ((enemyPawns & PASSED_MASKS[us][square]) == 0) {
+                    int advanced = us == 0 ? 7 - (square >>> 3) : square >>> 3;
+                    middlegameScore += sign * PASSED_MIDDLEGAME[advanced];
+                    endgameScore += sign * PASSED_ENDGAME[advanced];
+                }
+            }
+        }
+
+        pawnKeys[index] = pawnKey;
+        pawnMiddlegame[index] = middlegameScore;
+        pawnEndgame[index] = endgameScore;
+        middlegame[PAWN_STRUCTURE] = middlegameScore;
+        endgame[PAWN_STRUCTURE] = endgameScore;
+    }
+
+    // check if the color has pieces other than pawns and king, null moves are unsafe without them
+    public static boolean hasNonPawnMaterial(Position position, Piece.Color color) {
+        int offset = (color.ordinal() - 1) * 6;
+        return (position.getBitboard(offset + 1) | position.getBitboard(offset + 2)
+                | position.getBitboard(offset + 3) | position.getBitboard(offset + 4)) != 0;
+    }
+}
@@ -0,0 +1,9 @@
+package chess.engine;
+
+import chess.board.Position;
+
+// static evaluation used by the search, in centipawns from the side to move
+// an evaluator belongs to one search thread and may keep state about the position it is used with
+public interface Evaluator {
+    int evaluate(Position position);
+}
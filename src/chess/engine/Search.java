@@ -0,0 +1,508 @@
+package chess.engine;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.engine.nnue.Network;
+import chess.engine.nnue.NnueEvaluation;
+import chess.engine.nnue.NnueKernels;
+import chess.piece.Move;
+import chess.piece.Piece;
+import chess.tablebase.Tablebase;
+import chess.tablebase.Tablebases;
+
+import java.util.Arrays;
+
+// negamax alpha-beta search with iterative deepening on a private copy of a position
+// moves are generated into per ply buffers, so a running search does not allocate
+// one search is used by one thread, stop() may be called from any thread
+// for a parallel search several searches of the same position share one transposition table (lazy smp), the main
+// search with id 0 applies the limits and stops its helpers when it finishes
+public class Search {
+    public static final int MATE = 32000;
+    public static final int INFINITY = 32500;
+    public static final int MAX_PLY = 128;
+
+    // move ordering scores, captures are ordered by victim value first and attacker value second
+    private static final int PV_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 28;
+    private static final int KILLER_SCORE = 1 << 27;
+    // history scores are halved once one passes this, so they stay below the killers and never overflow
+    private static final int HISTORY_LIMIT = 1 << 20;
+    // value a promotion adds, indexed by the promotion type ordinal
+    private static final int[] PROMOTION_VALUES = {0, 0, 220, 230, 400, 800, 0};
+
+    private static final NnueKernels KERNELS = NnueKernels.best();
+
+    // nodes between two checks of the clock
+    private static final int CHECK_INTERVAL = 2048;
+
+    // returned by a tablebase probe that does not cover the position
+    private static final int NO_SCORE = Integer.MIN_VALUE;
+
+    private final Position position;
+    private final Evaluator evaluator;
+    private final TranspositionTable table;
+    private final int id;
+    private Search[] helpers = new Search[0];
+    // exact results for positions with few pieces, null when there are none
+    private Tablebases tablebases;
+    private final int[][] moves = new int[MAX_PLY][Move.MAX_MOVES];
+    private final int[][] scores = new int[MAX_PLY][Move.MAX_MOVES];
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[][] killers = new int[MAX_PLY][2];
+    // indexed by color, from square and to square, raised for quiet moves that cause a beta cutoff and aged by halving
+    private final int[][][] history = new int[2][64][64];
+
+    // principal variation of the last finished iteration, its moves are searched first
+    private int[] previousPv = new int[0];
+
+    private volatile boolean stopped;
+    private long nodes;
+    private long maxNodes;
+    private long deadline;
+
+    public Search(Position position) {
+        this(position, null, 0, null);
+    }
+
+    // the table may be null, helpers have an id above 0
+    // positions are evaluated by the network when one is given and by the handcrafted Evaluation otherwise
+    public Search(Position position, TranspositionTable table, int id, Network network) {
+        if (!position.hasBitboards()) {
+            throw new IllegalArgumentException("The engine only searches 8x8 positions");
+        }
+        this.position = new Position(position);
+        this.table = table;
+        this.id = id;
+        if (network == null) {
+            this.evaluator = new Evaluation();
+        } else {
+            NnueEvaluation nnue = new NnueEvaluation(network, KERNELS);
+            nnue.attach(this.position);
+            this.evaluator = nnue;
+        }
+    }
+
+    // searches that run on other threads and are stopped together with this one
+    public void setHelpers(Search[] helpers) {
+        this.helpers = helpers;
+    }
+
+    // score positions covered by the tablebases by their distance to mate and play the root by them
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    // ask a running search to return, it finishes with the result of the last finished iteration
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    // nodes of this search and all of its helpers
+    public long getTotalNodes() {
+        long total = nodes;
+        for (Search helper : helpers) {
+            total += helper.nodes;
+        }
+        return total;
+    }
+
+    // search with increasing depth until a limit is reached, the listener may be null
+    public SearchResult run(SearchLimits limits, SearchListener listener) {
+        long start = System.nanoTime();
+        ageHistory(history[0]);
+        ageHistory(history[1]);
+        maxNodes = limits.getNodes();
+        deadline = limits.getTimeMillis() == Long.MAX_VALUE ? Long.MAX_VALUE : start + limits.getTimeMillis() * 1_000_000L;
+        nodes = 0;
+
+        int[] rootMoves = new int[Move.MAX_MOVES];
+        int rootCount = BitboardMoves.generate(position, rootMoves);
+        if (rootCount == 0) {
+            boolean check = BitboardMoves.isCheck(position, position.getTurn());
+            return new SearchResult(Move.NONE, check ? -MATE : 0, 0, 0, System.nanoTime() - start, new int[0]);
+        }
+
+        SearchResult tablebaseResult = tablebaseRoot(start);
+        if (tablebaseResult != null) {
+            if (listener != null) {
+                listener.onIteration(tablebaseResult);
+            }
+            stopped = true;
+            for (Search helper : helpers) {
+                helper.stop();
+            }
+            return tablebaseResult;
+        }
+
+        // a result is always returned, even when the first iteration is interrupted
+        // every other helper skips the first depth so the threads are not all on the same iteration
+        SearchResult result = new SearchResult(rootMoves[0], 0, 0, 0, 0, new int[]{rootMoves[0]});
+        for (int depth = 1 + (id & 1); depth <= limits.getDepth(); depth++) {
+            int score = search(depth, 0, -INFINITY, INFINITY, true);
+            if (stopped && depth > 1) {
+                break;
+            }
+
+            int[] pv = new int[pvLength[0]];
+            System.arraycopy(pvTable[0], 0, pv, 0, pv.length);
+            if (pv.length == 0) {
+                break;
+            }
+            previousPv = pv;
+            result = new SearchResult(pv[0], score, depth, getTotalNodes(), System.nanoTime() - start, pv);
+            if (listener != null) {
+                listener.onIteration(result);
+            }
+
+            // stop when the next iteration would likely not finish, or a forced mate was found
+            if (stopped || result.isMate() && depth >= MATE - Math.abs(score)) {
+                break;
+            }
+            if (deadline != Long.MAX_VALUE && System.nanoTime() > start + (deadline - start) / 2) {
+                break;
+            }
+        }
+        stopped = true;
+        for (Search helper : helpers) {
+            helper.stop();
+        }
+        return result;
+    }
+
+    private int search(int depth, int ply, int alpha, int beta, boolean pvNode) {
+        pvLength[ply] = ply;
+        if (ply > 0 && isDraw()) {
+            return 0;
+        }
+        if (ply > 0) {
+            int tablebaseScore = probeTablebases(ply);
+            if (tablebaseScore != NO_SCORE) {
+                return tablebaseScore;
+            }
+        }
+        if (depth <= 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (countNode() || ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(position);
+        }
+
+        // a stored result of at least the same depth ends the node, except on the principal variation
+        // where the full line is wanted
+        long key = position.getKey();
+        long entry = table == null ? 0 : table.probe(key);
+        int hashMove = TranspositionTable.move(entry);
+        if (entry != 0 && !pvNode && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && score >= beta
+                    || bound == TranspositionTable.UPPER && score <= alpha) {
+                return score;
+            }
+        }
+
+        Piece.Color turn = position.getTurn();
+        boolean inCheck = BitboardMoves.isCheck(position, turn);
+
+        // null move, if passing still fails high the opponent is unlikely to let the position be reached
+        if (!pvNode && !inCheck && depth >= 3 && beta < MATE - MAX_PLY && Evaluation.hasNonPawnMaterial(position, turn)
+                && evaluator.evaluate(position) >= beta) {
+            position.makeNullMove();
+            int score = -search(depth - 3, ply + 1, -beta, -beta + 1, false);
+            position.unmakeNullMove();
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                return beta;
+            }
+        }
+
+        int[] moves = this.moves[ply];
+        int count = BitboardMoves.generate(position, moves);
+        if (count == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(ply, count, turn, hashMove);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            boolean quiet = !Move.hasFlags(move, Move.CAPTURE | Move.PROMOTION);
+
+            position.makeMove(move);
+            boolean givesCheck = BitboardMoves.isCheck(position, position.getTurn());
+            int newDepth = givesCheck ? depth : depth - 1;
+
+            int score;
+            if (i == 0) {
+                score = -search(newDepth, ply + 1, -beta, -alpha, pvNode);
+            } else {
+                // late quiet moves are searched with less depth first, and all moves after the first with a null window
+                int reduction = depth >= 3 && i >= 4 && quiet && !inCheck && !givesCheck ? 1 : 0;
+                score = -search(newDepth - reduction, ply + 1, -alpha - 1, -alpha, false);
+                if (score > alpha && reduction > 0) {
+                    score = -search(newDepth, ply + 1, -alpha - 1, -alpha, false);
+                }
+                if (score > alpha && score < beta) {
+                    score = -search(newDepth, ply + 1, -beta, -alpha, pvNode);
+                }
+            }
+            position.unmakeMove(move);
+
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    if (quiet) {
+                        storeKiller(ply, move);
+                        int[][] history = this.history[turn.ordinal() - 1];
+                        if ((history[Move.from(move)][Move.to(move)] += depth * depth) > HISTORY_LIMIT) {
+                            ageHistory(history);
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (table != null) {
+            int bound = bestScore >= beta ? TranspositionTable.LOWER
+                    : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(key, bound == TranspositionTable.UPPER ? Move.NONE : bestMove, toTable(bestScore, ply), depth, bound);
+        }
+        return bestScore;
+    }
+
+    // the root move and line of perfect play when the tablebases cover the position, null otherwise
+    private SearchResult tablebaseRoot(long start) {
+        if (tablebases == null) {
+            return null;
+        }
+        int value = tablebases.probe(position);
+        int bestMove = tablebases.bestMove(position);
+        if (bestMove == Move.NONE) {
+            return null;
+        }
+        // the line follows the best moves until mate, a drawn line only shows its first move
+        Position line = new Position(position);
+        int length = Tablebase.isWin(value) || Tablebase.isLoss(value) ? Math.min(Tablebase.plies(value), MAX_PLY) : 1;
+        int[] pv = new int[length];
+        int count = 0;
+        for (int move = bestMove; move != Move.NONE && count < length; move = tablebases.bestMove(line)) {
+            pv[count++] = move;
+            line.makeMove(move);
+        }
+        if (count < length) {
+            pv = Arrays.copyOf(pv, count);
+        }
+        return new SearchResult(bestMove, tablebaseScore(value, 0), count, 1, System.nanoTime() - start, pv);
+    }
+
+    // exact score of the position from the tablebases, NO_SCORE when it is not covered or nothing is loaded
+    private int probeTablebases(int ply) {
+        if (tablebases == null || Long.bitCount(position.getOccupancy()) > tablebases.getMaxPieces()) {
+            return NO_SCORE;
+        }
+        int value = tablebases.probe(position);
+        return value == Tablebases.NONE || value == Tablebase.INVALID ? NO_SCORE : tablebaseScore(value, ply);
+    }
+
+    // mate scores count the plies from the root, mates longer than the search can report are shortened to its horizon
+    private static int tablebaseScore(int value, int ply) {
+        int plies = Math.min(ply + Tablebase.plies(value), MAX_PLY - 1);
+        if (Tablebase.isWin(value)) return MATE - plies;
+        if (Tablebase.isLoss(value)) return -MATE + plies;
+        return 0;
+    }
+
+    // mate scores are stored relative to the node instead of the root, so they stay right in another path
+    private static int toTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score + ply;
+        if (score <= -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) return score - ply;
+        if (score <= -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+    // only captures and promotions, so the static evaluation is not taken in the middle of an exchange
+    // when in check every evasion is searched because standing pat is not allowed
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = ply;
+        if (countNode() || ply >= MAX_PLY - 1) {
+            return evaluator.evaluate(position);
+        }
+
+        Piece.Color turn = position.getTurn();
+        boolean inCheck = BitboardMoves.isCheck(position, turn);
+        int[] moves = this.moves[ply];
+        int count;
+        int bestScore;
+        if (inCheck) {
+            count = BitboardMoves.generate(position, moves);
+            if (count == 0) {
+                return -MATE + ply;
+            }
+            bestScore = -INFINITY;
+        } else {
+            bestScore = evaluator.evaluate(position);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+            if (bestScore > alpha) {
+                alpha = bestScore;
+            }
+            count = BitboardMoves.generateCaptures(position, moves);
+        }
+        scoreMoves(ply, count, turn, Move.NONE);
+
+        for (int i = 0; i < count; i++) {
+            int move = pickMove(ply, i, count);
+            // under promotions only matter for mates and stalemates, which quiescence does not look for
+            if (!inCheck && Move.hasFlags(move, Move.PROMOTION) && Move.promotion(move) != Piece.Type.QUEEN) {
+                continue;
+            }
+
+            position.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            position.unmakeMove(move);
+
+            if (stopped) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    break;
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    // count the node and check the limits, returns true when the search has to stop
+    // with helpers the node limit counts the nodes of all threads and is only checked with the clock
+    private boolean countNode() {
+        nodes++;
+        if (helpers.length == 0 && nodes >= maxNodes) {
+            stopped = true;
+        } else if ((nodes & (CHECK_INTERVAL - 1)) == 0) {
+            if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline || helpers.length > 0 && getTotalNodes() >= maxNodes) {
+                stopped = true;
+            }
+        }
+        return stopped;
+    }
+
+    private boolean isDraw() {
+        return position.getHalfmoveClock() >= 100 || position.getRepetitionCount() > 0 || position.isInsufficientMaterial();
+    }
+
+    // halve the history scores of one color, older cutoffs count less than recent ones
+    private static void ageHistory(int[][] history) {
+        for (int[] scores : history) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] >>= 1;
+            }
+        }
+    }
+
+    private void scoreMoves(int ply, int count, Piece.Color turn, int hashMove) {
+        int[] moves = this.moves[ply];
+        int[] scores = this.scores[ply];
+        int pvMove = ply < previousPv.length ? previousPv[ply] : Move.NONE;
+        int[][] history = this.history[turn.ordinal() - 1];
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int from = Move.from(move);
+            int to = Move.to(move);
+            if (move == hashMove) {
+                scores[i] = PV_SCORE + 1;
+            } else if (move == pvMove) {
+                scores[i] = PV_SCORE;
+            } else if (Move.hasFlags(move, Move.CAPTURE | Move.PROMOTION)) {
+                int victim = Move.hasFlags(move, Move.EN_PASSANT) ? 0 : typeAt(to);
+                int promotion = Move.hasFlags(move, Move.PROMOTION) ? PROMOTION_VALUES[Move.promotion(move).ordinal()] : 0;
+                int victimValue = victim < 0 ? 0 : Evaluation.PIECE_VALUES[victim];
+                scores[i] = CAPTURE_SCORE + (victimValue + promotion) * 8 - typeAt(from);
+            } else if (move == killers[ply][0]) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (move == killers[ply][1]) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = Math.min(history[from][to], KILLER_SCORE - 1);
+            }
+        }
+    }
+
+    // piece type offset of the piece on the square, -1 for an empty square
+    private int typeAt(int square) {
+        return position.getPiece(square & 7, square >>> 3).type.ordinal() - 1;
+    }
+
+    // move the best scored of the remaining moves to the index, moves are sorted lazily because most nodes cut off early
+    private int pickMove(int ply, int index, int count) {
+        int[] moves = this.moves[ply];
+        int[] scores = this.scores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        int score = scores[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        scores[index] = score;
+        return move;
+    }
+
+    private void storeKiller(int ply, int move) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    // the principal variation of a node is its move followed by the variation of the child
+    private void updatePv(int ply, int move) {
+        int[] pv = pvTable[ply];
+        int[] childPv = pvTable[ply + 1];
+        pv[ply] = move;
+        int childLength = pvLength[ply + 1];
+        for (int i = ply + 1; i < childLength; i++) {
+            pv[i] = childPv[i];
+        }
+        pvLength[ply] = Math.max(childLength, ply + 1);
+    }
+}
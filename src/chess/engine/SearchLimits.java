@@ -0,0 +1,70 @@
+package chess.engine;
+
+// when a search stops, every limit that is reached ends it
+public class SearchLimits {
+    public static final int MAX_DEPTH = 100;
+
+    private int depth = MAX_DEPTH;
+    private long nodes = Long.MAX_VALUE;
+    private long timeMillis = Long.MAX_VALUE;
+
+    // no limit, the search runs until it is stopped or reaches MAX_DEPTH
+    public static SearchLimits infinite() {
+        return new SearchLimits();
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits().setDepth(depth);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits().setNodes(nodes);
+    }
+
+    public static SearchLimits time(long timeMillis) {
+        return new SearchLimits().setTimeMillis(timeMillis);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public SearchLimits setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1, was " + depth);
+        }
+        this.depth = Math.min(depth, MAX_DEPTH);
+        return this;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public SearchLimits setNodes(long nodes) {
+        if (nodes < 1) {
+            throw new IllegalArgumentException("Node limit must be at least 1, was " + nodes);
+        }
+        this.nodes = nodes;
+        return this;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public SearchLimits setTimeMillis(long timeMillis) {
+        if (timeMillis < 1) {
+            throw new IllegalArgumentException("Time limit must be at least 1 ms, was " + timeMillis);
+        }
+        this.timeMillis = timeMillis;
+        return this;
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "depth " + depth + ", nodes " + (nodes == Long.MAX_VALUE ? "-" : nodes)
+                + ", time " + (timeMillis == Long.MAX_VALUE ? "-" : timeMillis + " ms");
+    }
+}
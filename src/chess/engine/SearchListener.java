@@ -0,0 +1,10 @@
+package chess.engine;
+
+// receives the result of every finished iteration while a search is running, called on the search thread
+public interface SearchListener {
+    void onIteration(SearchResult result);
+
+    // called once on the search thread when a search started with Engine.start() has returned its result
+    default void onFinished(SearchResult result) {
+    }
+}
@@ -0,0 +1,67 @@
+package chess.engine;
+
+import chess.piece.Move;
+
+// best move, score and principal variation of a finished iteration
+// scores are in centipawns from the side to move, mate scores are within MAX_PLY of Search.MATE
+public class SearchResult {
+    public final int bestMove;
+    public final int score;
+    public final int depth;
+    public final long nodes;
+    public final long nanos;
+    // encoded moves of the principal variation, starting with the best move
+    public final int[] pv;
+
+    public SearchResult(int bestMove, int score, int depth, long nodes, long nanos, int[] pv) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.nanos = nanos;
+        this.pv = pv;
+    }
+
+    // object view of the best move, null when the position has no legal move
+    public Move getBestMove() {
+        return bestMove == Move.NONE ? null : Move.decode(bestMove);
+    }
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - Search.MAX_PLY;
+    }
+
+    // moves until mate, negative when the side to move is mated
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+    }
+
+    public long nodesPerSecond() {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return nodes * 1_000_000_000L / nanos;
+    }
+
+    public String getPv() {
+        StringBuilder builder = new StringBuilder();
+        for (int move : pv) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(Move.toUci(move));
+        }
+        return builder.toString();
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "depth " + depth + " score " + (isMate() ? "mate " + mateIn() : "cp " + score) + " nodes " + nodes
+                + " nps " + nodesPerSecond() + " time " + nanos / 1_000_000 + " pv " + getPv();
+    }
+}
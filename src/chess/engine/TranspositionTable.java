@@ -0,0 +1,215 @@
+package chess.engine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.LongAdder;
+
+// results of searched positions keyed by their zobrist key, shared by all search threads without locks
+// the entries live in direct byte buffers outside the java heap, so a table of gigabytes adds nothing to gc pauses
+// every entry is two longs, the key xor the data and the data itself, a reader only accepts an entry whose
+// two words xor back to the probed key, so an entry torn by two threads writing at once reads as a miss
+// entries are grouped in buckets of two: the first slot keeps the deepest result of the current search,
+// the second slot is always replaced
+public class TranspositionTable {
+    // bound types, the stored score is an upper bound, a lower bound or exact
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_BYTES = 2 * ENTRY_BYTES;
+    // one direct buffer holds at most 2 GB, larger tables are split into segments of 1 GB
+    private static final int SEGMENT_SHIFT = 30 - 5;
+    private static final long SEGMENT_BUCKETS = 1L << SEGMENT_SHIFT;
+    private static final int AGE_MASK = 0x3F;
+
+    private ByteBuffer[] segments;
+    private long mask;
+    private int sizeMb;
+    // search counter kept in the entries, results of earlier searches are replaced first
+    private volatile int age;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder replacements = new LongAdder();
+
+    public TranspositionTable(int sizeMb) {
+        resize(sizeMb);
+    }
+
+    // allocate an empty table of the size, the bucket count is rounded down to a power of two so the index is a mask of the key
+    public synchronized void resize(int sizeMb) {
+        if (sizeMb < 1) {
+            throw new IllegalArgumentException("Table size must be at least 1 MB, was " + sizeMb);
+        }
+        long buckets = Long.highestOneBit(sizeMb * 1024L * 1024L / BUCKET_BYTES);
+        int segmentCount = (int) Math.max(1, buckets / SEGMENT_BUCKETS);
+        ByteBuffer[] segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int bytes = (int) (Math.min(buckets, SEGMENT_BUCKETS) * BUCKET_BYTES);
+            segments[i] = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        this.segments = segments;
+        this.mask = buckets - 1;
+        this.sizeMb = sizeMb;
+        this.age = 0;
+        resetStatistics();
+    }
+
+    // start a new search, entries of older searches become the first to be replaced
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    // data of the entry for the key, 0 when there is none
+    public long probe(long key) {
+        probes.increment();
+        ByteBuffer segment = segment(key);
+        int offset = offset(key);
+        for (int slot = 0; slot < BUCKET_BYTES; slot += ENTRY_BYTES) {
+            long data = segment.getLong(offset + slot + 8);
+            if ((segment.getLong(offset + slot) ^ data) == key && data != 0) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    // the first slot is only replaced by a result of at least the same depth, of the same position or when it is
+    // left from an earlier search, every other result goes to the second slot
+    public void store(long key, int move, int score, int depth, int bound) {
+        stores.increment();
+        ByteBuffer segment = segment(key);
+        int offset = offset(key);
+        int age = this.age;
+
+        long old = segment.getLong(offset + 8);
+        boolean samePosition = (segment.getLong(offset) ^ old) == key;
+        int slot = 0;
+        if (old != 0 && !samePosition && depth(old) > depth && age(old) == age) {
+            slot = ENTRY_BYTES;
+            old = segment.getLong(offset + slot + 8);
+            samePosition = (segment.getLong(offset + slot) ^ old) == key;
+        }
+
+        if (old != 0 && !samePosition) {
+            replacements.increment();
+        }
+        // keep the move of an earlier search of the position when this one has none
+        if (move == 0 && samePosition) {
+            move = move(old);
+        }
+        long data = pack(move, score, depth, bound, age);
+        segment.putLong(offset + slot + 8, data);
+        segment.putLong(offset + slot, key ^ data);
+    }
+
+    public synchronized void clear() {
+        for (ByteBuffer segment : segments) {
+            for (int i = 0; i < segment.capacity(); i += 8) {
+                segment.putLong(i, 0);
+            }
+        }
+        age = 0;
+        resetStatistics();
+    }
+
+    // number of entries
+    public long size() {
+        return (mask + 1) * 2;
+    }
+
+    public int getSizeMb() {
+        return sizeMb;
+    }
+
+    // share of probes that found an entry since the table was created, cleared or resized
+    public double getHitRate() {
+        long probes = this.probes.sum();
+        return probes == 0 ? 0 : (double) hits.sum() / probes;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    // stores that overwrote an entry of another position
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    // used entries of the current search per thousand, estimated from the first buckets
+    public int getPermilleFull() {
+        ByteBuffer segment = segments[0];
+        int sample = (int) Math.min(500, mask + 1);
+        int used = 0;
+        for (int bucket = 0; bucket < sample; bucket++) {
+            for (int slot = 0; slot < BUCKET_BYTES; slot += ENTRY_BYTES) {
+                long data = segment.getLong(bucket * BUCKET_BYTES + slot + 8);
+                if (data != 0 && age(data) == age) {
+                    used++;
+                }
+            }
+        }
+        return used * 1000 / (sample * 2);
+    }
+
+    private void resetStatistics() {
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        replacements.reset();
+    }
+
+    private ByteBuffer segment(long key) {
+        return segments[(int) ((key & mask) >>> SEGMENT_SHIFT)];
+    }
+
+    private int offset(long key) {
+        return (int) (key & mask & (SEGMENT_BUCKETS - 1)) * BUCKET_BYTES;
+    }
+
+    // entry data: bits 0-19 the encoded move, 20-35 the score, 36-43 the depth, 44-45 the bound and 46-51 the age
+    // the bound is never 0, so no stored entry has data 0
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & 0xFFFFFL) | ((long) (score & 0xFFFF) << 20) | ((long) Math.min(Math.max(depth, 0), 0xFF) << 36)
+                | ((long) bound << 44) | ((long) age << 46);
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 20);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 36) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 44) & 0x3);
+    }
+
+    public static int age(long data) {
+        return (int) ((data >>> 46) & AGE_MASK);
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return sizeMb + " MB, " + size() + " entries, " + getProbes() + " probes, hit rate "
+                + Math.round(getHitRate() * 1000) / 10.0 + "%, " + getStores() + " stores, " + getReplacements() + " replacements";
+    }
+}
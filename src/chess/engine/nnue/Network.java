@@ -0,0 +1,145 @@
+package chess.engine.nnue;
+
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// weights of a small quantized network: 768 inputs, one per piece and square, into a hidden layer that is computed
+// twice, once from each side, and one output from both halves after a clipped relu
+// the network is read only after loading, so one instance can be shared by all search threads
+//
+// file format, little endian:
+//   int magic "NNUE", int version 1, int hidden size, int qa, int qb, int scale
+//   short feature weights [768][hidden], short feature biases [hidden]
+//   short output weights [2][hidden], side to move half first, int output bias
+// the hidden layer is clipped to 0..qa, the output is (sum + bias) * scale / (qa * qb) centipawns
+public class Network {
+    public static final int INPUTS = 768;
+    private static final int MAGIC = 0x45554E4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * 4;
+
+    public final int hiddenSize;
+    public final int qa;
+    public final int qb;
+    public final int scale;
+    // kept as ints so the kernels need no widening
+    final int[] featureWeights;
+    final int[] featureBiases;
+    final int[] outputWeights;
+    final int outputBias;
+
+    private Network(int hiddenSize, int qa, int qb, int scale, int[] featureWeights, int[] featureBiases, int[] outputWeights, int outputBias) {
+        this.hiddenSize = hiddenSize;
+        this.qa = qa;
+        this.qb = qb;
+        this.scale = scale;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    public static Network load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException(path + " is not a network file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(path + " has network version " + version + ", expected " + VERSION);
+        }
+        int hiddenSize = buffer.getInt();
+        int qa = buffer.getInt();
+        int qb = buffer.getInt();
+        int scale = buffer.getInt();
+        if (hiddenSize < 1 || hiddenSize > 4096 || qa < 1 || qb < 1 || scale < 1) {
+            throw new IllegalArgumentException(path + " has an invalid header");
+        }
+        long expected = HEADER_BYTES + 2L * (INPUTS * hiddenSize + hiddenSize + 2 * hiddenSize) + 4;
+        if (buffer.capacity() != expected) {
+            throw new IllegalArgumentException(path + " has " + buffer.capacity() + " bytes, expected " + expected);
+        }
+
+        int[] featureWeights = readShorts(buffer, INPUTS * hiddenSize);
+        int[] featureBiases = readShorts(buffer, hiddenSize);
+        int[] outputWeights = readShorts(buffer, 2 * hiddenSize);
+        int outputBias = buffer.getInt();
+        // the kernels sum the output layer in ints, every clipped activation is at most qa
+        int maxWeight = 0;
+        for (int weight : outputWeights) {
+            maxWeight = Math.max(maxWeight, Math.abs(weight));
+        }
+        long maxSum = 2L * hiddenSize * qa * maxWeight + Math.abs((long) outputBias);
+        if (maxSum > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(path + " can overflow the output layer, " + 2 * hiddenSize + " weights up to "
+                    + maxWeight + " with qa " + qa + " sum to " + maxSum);
+        }
+        return new Network(hiddenSize, qa, qb, scale, featureWeights, featureBiases, outputWeights, outputBias);
+    }
+
+    public void write(Path path) throws IOException {
+        int bytes = HEADER_BYTES + 2 * (featureWeights.length + featureBiases.length + outputWeights.length) + 4;
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hiddenSize).putInt(qa).putInt(qb).putInt(scale);
+        writeShorts(buffer, featureWeights);
+        writeShorts(buffer, featureBiases);
+        writeShorts(buffer, outputWeights);
+        buffer.putInt(outputBias);
+        Files.write(path, buffer.array());
+    }
+
+    // network with random weights, for benchmarks and for testing the file format
+    public static Network random(int hiddenSize, long seed) {
+        Random random = new Random(seed);
+        int[] featureWeights = new int[INPUTS * hiddenSize];
+        int[] featureBiases = new int[hiddenSize];
+        int[] outputWeights = new int[2 * hiddenSize];
+        for (int i = 0; i < featureWeights.length; i++) {
+            featureWeights[i] = random.nextInt(129) - 64;
+        }
+        for (int i = 0; i < featureBiases.length; i++) {
+            featureBiases[i] = random.nextInt(129);
+        }
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = random.nextInt(129) - 64;
+        }
+        return new Network(hiddenSize, 255, 64, 400, featureWeights, featureBiases, outputWeights, 0);
+    }
+
+    // offset of the weights of a piece on a square, y * 8 + x, in the feature weights as seen from the perspective
+    // the black perspective mirrors the board and swaps the colors, so both halves share the same weights
+    int featureOffset(int perspective, Piece piece, int square) {
+        int index = piece.index();
+        if (perspective == 1) {
+            index = index < 6 ? index + 6 : index - 6;
+            square ^= 56;
+        }
+        return (index * 64 + square) * hiddenSize;
+    }
+
+    private static int[] readShorts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = buffer.getShort();
+        }
+        return values;
+    }
+
+    private static void writeShorts(ByteBuffer buffer, int[] values) {
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return INPUTS + "x" + hiddenSize + "x2 -> 1, qa " + qa + ", qb " + qb + ", scale " + scale;
+    }
+}
@@ -0,0 +1,90 @@
+package chess.engine.nnue;
+
+import chess.board.Position;
+import chess.board.SquareListener;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.piece.Piece;
+
+// evaluation by a Network with one accumulator of the hidden layer per perspective
+// attached to a position as its listener, every changed square adds or subtracts the weights of one piece,
+// so make and unmake keep the accumulators right and evaluate only computes the output layer
+// one instance per search thread and position
+public class NnueEvaluation implements Evaluator, SquareListener {
+    // largest score a network gives, below the mate scores
+    public static final int MAX_SCORE = Search.MATE - Search.MAX_PLY - 1;
+
+    private final Network network;
+    private final NnueKernels kernels;
+    // hidden layer before the clipped relu, indexed by perspective, 0 white and 1 black
+    private final int[][] accumulators;
+
+    public NnueEvaluation(Network network, NnueKernels kernels) {
+        this.network = network;
+        this.kernels = kernels;
+        this.accumulators = new int[2][network.hiddenSize];
+        cleared();
+    }
+
+    // compute the accumulators for the position and follow its changes from now on
+    public void attach(Position position) {
+        if (!position.hasBitboards()) {
+            throw new IllegalArgumentException("Networks only evaluate 8x8 positions");
+        }
+        refresh(position);
+        position.setListener(this);
+    }
+
+    // compute the accumulators from scratch
+    public void refresh(Position position) {
+        cleared();
+        for (int square = 0; square < 64; square++) {
+            Piece piece = position.getPiece(square & 7, square >>> 3);
+            if (!piece.isNone()) {
+                addPiece(piece, square);
+            }
+        }
+    }
+
+    // the position must be the attached one
+    @Override
+    public int evaluate(Position position) {
+        int us = position.getTurn() == Piece.Color.WHITE ? 0 : 1;
+        int hidden = network.hiddenSize;
+        int sum = kernels.clippedDot(accumulators[us], network.outputWeights, 0, hidden, network.qa)
+                + kernels.clippedDot(accumulators[1 - us], network.outputWeights, hidden, hidden, network.qa)
+                + network.outputBias;
+        long score = (long) sum * network.scale / ((long) network.qa * network.qb);
+        // a network must never claim a mate or leave the score range of the search and the transposition table
+        return (int) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    }
+
+    @Override
+    public void squareChanged(int square, Piece oldPiece, Piece newPiece) {
+        if (!oldPiece.isNone()) {
+            int hidden = network.hiddenSize;
+            kernels.subtract(accumulators[0], network.featureWeights, network.featureOffset(0, oldPiece, square), hidden);
+            kernels.subtract(accumulators[1], network.featureWeights, network.featureOffset(1, oldPiece, square), hidden);
+        }
+        if (!newPiece.isNone()) {
+            addPiece(newPiece, square);
+        }
+    }
+
+    @Override
+    public void cleared() {
+        for (int[] accumulator : accumulators) {
+            System.arraycopy(network.featureBiases, 0, accumulator, 0, network.hiddenSize);
+        }
+    }
+
+    public NnueKernels getKernels() {
+        return kernels;
+    }
+
+    private void addPiece(Piece piece, int square) {
+        int hidden = network.hiddenSize;
+        kernels.add(accumulators[0], network.featureWeights, network.featureOffset(0, piece, square), hidden);
+        kernels.add(accumulators[1], network.featureWeights, network.featureOffset(1, piece, square), hidden);
+    }
+}
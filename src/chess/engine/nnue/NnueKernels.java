@@ -0,0 +1,63 @@
+package chess.engine.nnue;
+
+// the loops of the network over arrays of hidden size, with a scalar version and one using the vector api
+public abstract class NnueKernels {
+    // accumulator[i] += weights[offset + i] for i below length
+    public abstract void add(int[] accumulator, int[] weights, int offset, int length);
+
+    // accumulator[i] -= weights[offset + i] for i below length
+    public abstract void subtract(int[] accumulator, int[] weights, int offset, int length);
+
+    // sum of clamp(accumulator[i], 0, max) * weights[offset + i] for i below length
+    public abstract int clippedDot(int[] accumulator, int[] weights, int offset, int length, int max);
+
+    public abstract String getName();
+
+    // the vector kernels when the jdk.incubator.vector module was added with --add-modules, the scalar ones otherwise
+    public static NnueKernels best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (NnueKernels) Class.forName("chess.engine.nnue.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return scalar();
+            }
+        }
+        return scalar();
+    }
+
+    public static NnueKernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    private static final class ScalarKernels extends NnueKernels {
+        static final ScalarKernels INSTANCE = new ScalarKernels();
+
+        @Override
+        public void add(int[] accumulator, int[] weights, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                accumulator[i] += weights[offset + i];
+            }
+        }
+
+        @Override
+        public void subtract(int[] accumulator, int[] weights, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                accumulator[i] -= weights[offset + i];
+            }
+        }
+
+        @Override
+        public int clippedDot(int[] accumulator, int[] weights, int offset, int length, int max) {
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += Math.min(Math.max(accumulator[i], 0), max) * weights[offset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package chess.engine.nnue;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// simd kernels, the only class that uses jdk.incubator.vector so the rest of the engine runs without the module
+// loaded by NnueKernels.best() through reflection, lanes left over at the end are done one by one
+final class VectorKernels extends NnueKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void add(int[] accumulator, int[] weights, int offset, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, accumulator, i)
+                    .add(IntVector.fromArray(SPECIES, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    @Override
+    public void subtract(int[] accumulator, int[] weights, int offset, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector.fromArray(SPECIES, accumulator, i)
+                    .sub(IntVector.fromArray(SPECIES, weights, offset + i))
+                    .intoArray(accumulator, i);
+        }
+        for (; i < length; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    @Override
+    public int clippedDot(int[] accumulator, int[] weights, int offset, int length, int max) {
+        int bound = SPECIES.loopBound(length);
+        IntVector sum = IntVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector clipped = IntVector.fromArray(SPECIES, accumulator, i).max(0).min(max);
+            sum = clipped.mul(IntVector.fromArray(SPECIES, weights, offset + i)).add(sum);
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += Math.min(Math.max(accumulator[i], 0), max) * weights[offset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.length() + "x32";
+    }
+}
@@ -0,0 +1,255 @@
+package chess.perft;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.piece.LegalMoves;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// counts the leaf nodes of the legal move tree to measure and verify the move generators
+// the root moves are split across a fork join pool
+public class Perft {
+    public enum Generator {
+        LEGAL_MOVES, BITBOARD
+    }
+
+    // standard perft positions with their node counts for depth 1, 2, 3...
+    public static final String[] SUITE_FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    public static final long[][] SUITE_NODES = {
+            {20, 400, 8902, 197281, 4865609, 119060324L},
+            {48, 2039, 97862, 4085603, 193690690L},
+            {14, 191, 2812, 43238, 674624, 11030083L},
+            {6, 264, 9467, 422333, 15833292L},
+            {44, 1486, 62379, 2103487, 89941194L},
+            {46, 2079, 89890, 3894594, 164075551L}
+    };
+
+    private final Generator generator;
+    private final ForkJoinPool pool;
+    private PerftCache cache;
+
+    public Perft(Generator generator, int threads) {
+        this.generator = generator;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    // reuse subtree results from the cache, null disables it
+    public void setCache(PerftCache cache) {
+        this.cache = cache;
+    }
+
+    public PerftResult perft(Position position, int depth) {
+        PerftResult result = new PerftResult();
+        long start = System.nanoTime();
+        for (PerftResult moveResult : divide(position, depth).values()) {
+            result.add(moveResult);
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    // count the leaf nodes below every root move, every root move is searched by its own task
+    public Map<Move, PerftResult> divide(Position position, int depth) {
+        Map<Move, PerftResult> results = new LinkedHashMap<>();
+        if (depth < 1) {
+            return results;
+        }
+
+        List<RootTask> tasks = new ArrayList<>();
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = generate(position, moves);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootTask(position, moves[i], depth));
+        }
+        for (RootTask task : tasks) {
+            pool.execute(task);
+        }
+        for (RootTask task : tasks) {
+            results.put(Move.decode(task.move), task.join());
+        }
+        return results;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // write the encoded legal moves into the buffer and return how many there are
+    private int generate(Position position, int[] moves) {
+        if (generator == Generator.BITBOARD) {
+            return BitboardMoves.generate(position, moves);
+        }
+        int count = 0;
+        for (Move move : LegalMoves.getAllLegalMoves(position).getLegalMoves()) {
+            moves[count++] = move.encode();
+        }
+        return count;
+    }
+
+    // check if the side to move is in check
+    private boolean isCheck(Position position) {
+        if (generator == Generator.BITBOARD) {
+            return BitboardMoves.isCheck(position, position.getTurn());
+        }
+        int[] kingPos = position.findPiece(Piece.Type.KING, position.getTurn());
+        return kingPos != null && LegalMoves.isCheck(kingPos[0], kingPos[1], position.getTurn(), position);
+    }
+
+    // count the leaves below the position, the last move is already applied
+    // every remaining depth has its own move buffer so the walk does not allocate
+    private void count(Position position, int lastMove, int depth, PerftResult result, int[][] buffers) {
+        if (depth == 0) {
+            result.addLeaf(lastMove, isCheck(position));
+            return;
+        }
+
+        if (cache != null && depth >= 2) {
+            PerftResult cached = cache.get(position, depth);
+            if (cached != null) {
+                result.add(cached);
+                return;
+            }
+        }
+
+        PerftResult subtree = cache != null ? new PerftResult() : result;
+        int[] moves = buffers[depth];
+        int count = generate(position, moves);
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            count(position, moves[i], depth - 1, subtree, buffers);
+            position.unmakeMove(moves[i]);
+        }
+
+        if (cache != null) {
+            if (depth >= 2) {
+                cache.put(position, depth, subtree);
+            }
+            result.add(subtree);
+        }
+    }
+
+    // run the standard suite up to a depth and report whether every count matches
+    public boolean runSuite(int maxDepth) {
+        boolean passed = true;
+        for (int i = 0; i < SUITE_FENS.length; i++) {
+            Position position = new Position(8);
+            position.loadFen(SUITE_FENS[i]);
+            for (int depth = 1; depth <= Math.min(maxDepth, SUITE_NODES[i].length); depth++) {
+                PerftResult result = perft(position, depth);
+                boolean ok = result.nodes == SUITE_NODES[i][depth - 1];
+                passed &= ok;
+                System.out.println((ok ? "ok   " : "FAIL ") + SUITE_FENS[i] + " depth " + depth + ": " + result
+                        + (ok ? "" : ", expected " + SUITE_NODES[i][depth - 1]));
+            }
+        }
+        return passed;
+    }
+
+    private class RootTask extends RecursiveTask<PerftResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final Position position;
+        private final int move;
+        private final int depth;
+
+        RootTask(Position position, int move, int depth) {
+            // every task walks its own copy of the position with make and unmake
+            this.position = new Position(position);
+            this.move = move;
+            this.depth = depth;
+        }
+
+        @Override
+        protected PerftResult compute() {
+            PerftResult result = new PerftResult();
+            position.makeMove(move);
+            count(position, move, depth - 1, result, new int[depth][Move.MAX_MOVES]);
+            return result;
+        }
+    }
+
+    // usage: Perft <depth> [fen] [--divide] [--threads n] [--cache entries] [--legal-moves]
+    //        Perft suite <max depth> [--threads n] [--cache entries] [--legal-moves]
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cacheEntries = 0;
+        boolean divide = false;
+        Generator generator = Generator.BITBOARD;
+        List<String> positional = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--cache":
+                    cacheEntries = Integer.parseInt(args[++i]);
+                    break;
+                case "--divide":
+                    divide = true;
+                    break;
+                case "--legal-moves":
+                    generator = Generator.LEGAL_MOVES;
+                    break;
+                default:
+                    positional.add(args[i]);
+            }
+        }
+        if (positional.isEmpty()) {
+            System.out.println("usage: Perft <depth> [fen] [--divide] [--threads n] [--cache entries] [--legal-moves]");
+            System.out.println("       Perft suite <max depth> [--threads n] [--cache entries] [--legal-moves]");
+            return;
+        }
+
+        Perft perft = new Perft(generator, threads);
+        if (cacheEntries > 0) {
+            perft.setCache(new PerftCache(cacheEntries));
+        }
+
+        try {
+            if (positional.get(0).equals("suite")) {
+                int maxDepth = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 4;
+                if (!perft.runSuite(maxDepth)) {
+                    System.exit(1);
+                }
+                return;
+            }
+
+            int depth = Integer.parseInt(positional.get(0));
+            Position position = new Position(8);
+            position.loadFen(positional.size() > 1 ? String.join(" ", positional.subList(1, positional.size())) : SUITE_FENS[0]);
+
+            if (divide) {
+                long start = System.nanoTime();
+                PerftResult total = new PerftResult();
+                for (Map.Entry<Move, PerftResult> entry : perft.divide(position, depth).entrySet()) {
+                    Move move = entry.getKey();
+                    System.out.println("" + (char) ('a' + move.fromX) + (8 - move.fromY) + (char) ('a' + move.toX) + (8 - move.toY)
+                            + (move.hasFlags(Move.PROMOTION) ? String.valueOf(new Piece(Piece.Color.BLACK, move.promotion).toFen()) : "")
+                            + ": " + entry.getValue().nodes);
+                    total.add(entry.getValue());
+                }
+                total.nanos = System.nanoTime() - start;
+                System.out.println(total);
+            } else {
+                System.out.println(perft.perft(position, depth));
+            }
+        } finally {
+            perft.shutdown();
+        }
+    }
+}
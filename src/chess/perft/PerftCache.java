@@ -0,0 +1,40 @@
+package chess.perft;
+
+import chess.board.Position;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// results of already counted subtrees, shared by all perft workers
+// positions are keyed by their zobrist key mixed with the remaining depth
+public class PerftCache {
+    private final Map<Long, PerftResult> results = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public PerftCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public PerftResult get(Position position, int depth) {
+        return results.get(key(position, depth));
+    }
+
+    // store a subtree result, new results are dropped once the cache is full
+    public void put(Position position, int depth, PerftResult result) {
+        if (results.size() < maxEntries) {
+            results.put(key(position, depth), result);
+        }
+    }
+
+    public int size() {
+        return results.size();
+    }
+
+    public void clear() {
+        results.clear();
+    }
+
+    private static long key(Position position, int depth) {
+        return position.getKey() ^ (depth * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,49 @@
+package chess.perft;
+
+import chess.piece.Move;
+
+// leaf node counts of a perft run, the same categories as the standard perft tables
+public class PerftResult {
+    public long nodes;
+    public long captures;
+    public long enPassants;
+    public long castles;
+    public long promotions;
+    public long checks;
+    public long nanos;
+
+    // count one leaf reached with the encoded move
+    public void addLeaf(int move, boolean check) {
+        nodes++;
+        if (Move.hasFlags(move, Move.CAPTURE)) captures++;
+        if (Move.hasFlags(move, Move.EN_PASSANT)) enPassants++;
+        if (Move.hasFlags(move, Move.CASTLE)) castles++;
+        if (Move.hasFlags(move, Move.PROMOTION)) promotions++;
+        if (check) checks++;
+    }
+
+    // add the counts of another result
+    public void add(PerftResult other) {
+        nodes += other.nodes;
+        captures += other.captures;
+        enPassants += other.enPassants;
+        castles += other.castles;
+        promotions += other.promotions;
+        checks += other.checks;
+    }
+
+    public long nodesPerSecond() {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return nodes * 1_000_000_000L / nanos;
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "nodes " + nodes + ", captures " + captures + ", e.p. " + enPassants + ", castles " + castles
+                + ", promotions " + promotions + ", checks " + checks
+                + ", " + nanos / 1_000_000 + " ms, " + nodesPerSecond() + " nps";
+    }
+}
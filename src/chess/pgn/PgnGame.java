@@ -0,0 +1,181 @@
+package chess.pgn;
+
+import chess.board.Fen;
+import chess.board.Position;
+import chess.piece.Move;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// one game of a PGN file: its tags, the moves as encoded ints and the result
+// games read by PgnReader only hold their raw movetext until replay() parses it, so the reader thread stays cheap
+// and the san parsing runs wherever the game is replayed
+public class PgnGame {
+    public static final String UNKNOWN_RESULT = "*";
+
+    // position of the game in its file, starting at 1, 0 for games not read from a file
+    public final long number;
+    private final Map<String, String> tags;
+    private byte[] movetext;
+    private int[] moves = new int[64];
+    private int moveCount;
+    private String result = UNKNOWN_RESULT;
+
+    public PgnGame() {
+        this(0, new LinkedHashMap<>(), null);
+    }
+
+    PgnGame(long number, Map<String, String> tags, byte[] movetext) {
+        this.number = number;
+        this.tags = tags;
+        this.movetext = movetext;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    // fen of the start position, the FEN tag or the standard start position
+    public String getStartFen() {
+        String fen = tags.get("FEN");
+        return fen == null ? Fen.START : fen;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getMove(int index) {
+        if (index < 0 || index >= moveCount) {
+            throw new IndexOutOfBoundsException("Move " + index + " of " + moveCount);
+        }
+        return moves[index];
+    }
+
+    // append a move, it must be legal in the position after the previous moves
+    public void addMove(int move) {
+        if (moveCount == moves.length) {
+            moves = Arrays.copyOf(moves, moveCount * 2);
+        }
+        moves[moveCount++] = move;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    // 1-0, 0-1, 1/2-1/2 or *
+    public void setResult(String result) {
+        if (!result.equals("1-0") && !result.equals("0-1") && !result.equals("1/2-1/2") && !result.equals(UNKNOWN_RESULT)) {
+            throw new IllegalArgumentException("Invalid result " + result);
+        }
+        this.result = result;
+        tags.put("Result", result);
+    }
+
+    public boolean isReplayed() {
+        return movetext == null;
+    }
+
+    // parse the movetext by playing it from the start position, comments, variations and annotations are skipped
+    // the position ends in the final position of the game, the buffer needs room for Move.MAX_MOVES moves
+    // throws IllegalArgumentException with the game number for an invalid start position or an illegal move
+    public void replay(Position position, int[] buffer) {
+        try {
+            position.loadFen(getStartFen());
+            if (movetext == null) {
+                for (int i = 0; i < moveCount; i++) {
+                    position.makeMove(moves[i]);
+                }
+                return;
+            }
+            parseMovetext(new String(movetext, StandardCharsets.ISO_8859_1), position, buffer);
+            movetext = null;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Game " + number + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void parseMovetext(String text, Position position, int[] buffer) {
+        moveCount = 0;
+        int length = text.length();
+        int variations = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c <= ' ') {
+                i++;
+            } else if (c == '{') {
+                int close = text.indexOf('}', i + 1);
+                i = close < 0 ? length : close + 1;
+            } else if (c == ';') {
+                int newline = text.indexOf('\n', i + 1);
+                i = newline < 0 ? length : newline + 1;
+            } else if (c == '(') {
+                variations++;
+                i++;
+            } else if (c == ')') {
+                variations = Math.max(0, variations - 1);
+                i++;
+            } else {
+                int end = i + 1;
+                while (end < length && !isDelimiter(text.charAt(end))) {
+                    end++;
+                }
+                if (variations == 0) {
+                    token(text, i, end, position, buffer);
+                }
+                i = end;
+            }
+        }
+    }
+
+    private void token(String text, int start, int end, Position position, int[] buffer) {
+        char c = text.charAt(start);
+        if (c == '$' || c == '!' || c == '?') {
+            // numeric or suffix annotation glyph
+            return;
+        }
+        if (c == '*' || text.startsWith("1-0", start) || text.startsWith("0-1", start) || text.startsWith("1/2-1/2", start)) {
+            setResult(text.substring(start, end));
+            return;
+        }
+        // move number like 12. or 12... which may be written without a space before the move
+        // castling written with zeros starts with 0, move numbers never do
+        if (c >= '1' && c <= '9') {
+            while (start < end && text.charAt(start) >= '0' && text.charAt(start) <= '9') {
+                start++;
+            }
+        }
+        while (start < end && text.charAt(start) == '.') {
+            start++;
+        }
+        if (start == end) {
+            return;
+        }
+        int move = San.parse(position, text, start, end, buffer);
+        position.makeMove(move);
+        addMove(move);
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == ';';
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "game " + number + " " + tags.getOrDefault("White", "?") + " - " + tags.getOrDefault("Black", "?")
+                + " " + result + ", " + (movetext == null ? moveCount + " moves" : "not replayed");
+    }
+}
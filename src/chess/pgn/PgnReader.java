@@ -0,0 +1,250 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// splits a PGN stream into games without holding more than a window of it in memory
+// files are memory-mapped window by window, other channels are read into a buffer that grows up to the size of the
+// largest game; tags are parsed here, the movetext is only copied out and parsed when the game is replayed
+// a game ends where the tags of the next one start, malformed tag lines are skipped, not for concurrent use
+public class PgnReader implements Closeable {
+    // no game may be larger than this, it is the window size of mapped files and the buffer limit of channels
+    public static final int MAX_GAME_BYTES = 1 << 26;
+    private static final int CHANNEL_BUFFER_BYTES = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    // set for mapped files
+    private final FileChannel file;
+    private final long fileSize;
+
+    // unread data is buffer[position, limit), bufferOffset is the stream offset of buffer index 0
+    private ByteBuffer buffer;
+    private long bufferOffset;
+    private int position;
+    private int limit;
+    private boolean endOfStream;
+
+    // start of the game being read and its movetext, moved along with the data when the buffer is refilled
+    private int gameStart;
+    private int movetextStart;
+    private int movetextEnd;
+
+    private byte[] scratch = new byte[256];
+    private long games;
+
+    private PgnReader(ReadableByteChannel channel, FileChannel file, long fileSize) {
+        this.channel = channel;
+        this.file = file;
+        this.fileSize = fileSize;
+        this.buffer = file == null ? ByteBuffer.allocate(CHANNEL_BUFFER_BYTES) : ByteBuffer.allocate(0);
+        this.endOfStream = file != null && fileSize == 0;
+    }
+
+    // read a file through memory-mapped windows
+    public static PgnReader open(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        return new PgnReader(file, file, file.size());
+    }
+
+    public PgnReader(ReadableByteChannel channel) {
+        this(channel, null, -1);
+    }
+
+    public PgnReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    // the next game with its tags and unparsed movetext, null at the end of the stream
+    public PgnGame next() throws IOException {
+        Map<String, String> tags = null;
+        gameStart = position;
+        movetextStart = -1;
+        movetextEnd = -1;
+        boolean inComment = false;
+
+        int lineEnd;
+        while ((lineEnd = findLineEnd()) >= 0) {
+            int first = position;
+            while (first < lineEnd && buffer.get(first) <= ' ') {
+                first++;
+            }
+            byte c = first < lineEnd ? buffer.get(first) : 0;
+            if (!inComment && c == '[') {
+                if (movetextStart >= 0) {
+                    // tags of the next game, its first line stays unread
+                    break;
+                }
+                if (tags == null) {
+                    tags = new LinkedHashMap<>();
+                }
+                parseTag(first + 1, lineEnd, tags);
+            } else if (!inComment && c == '%' && first == position) {
+                // escaped line
+            } else if (first < lineEnd) {
+                if (movetextStart < 0) {
+                    movetextStart = first;
+                }
+                movetextEnd = lineEnd;
+                inComment = scanComments(first, lineEnd, inComment);
+            }
+            position = lineEnd < limit ? lineEnd + 1 : lineEnd;
+        }
+
+        if (tags == null && movetextStart < 0) {
+            return null;
+        }
+        byte[] movetext = new byte[movetextStart < 0 ? 0 : movetextEnd - movetextStart];
+        if (movetext.length > 0) {
+            buffer.get(movetextStart, movetext);
+        }
+        return new PgnGame(++games, tags == null ? new LinkedHashMap<>() : tags, movetext);
+    }
+
+    // games returned so far
+    public long getGameCount() {
+        return games;
+    }
+
+    // bytes of the stream consumed so far, for progress reports
+    public long getBytesRead() {
+        return bufferOffset + position;
+    }
+
+    // size of the mapped file, -1 for channels
+    public long getSize() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // index of the newline ending the line at position, or limit for the last line without one, -1 when no data is left
+    private int findLineEnd() throws IOException {
+        int i = position;
+        while (true) {
+            while (i < limit) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+                i++;
+            }
+            if (endOfStream) {
+                return position < limit ? limit : -1;
+            }
+            i -= refill();
+        }
+    }
+
+    // keep the data from gameStart on and append more, return how far the kept data moved towards index 0
+    private int refill() throws IOException {
+        int keep = gameStart;
+        if (file != null) {
+            long offset = bufferOffset + keep;
+            int size = (int) Math.min(MAX_GAME_BYTES, fileSize - offset);
+            if (keep == 0 && size == limit) {
+                throw new IllegalArgumentException("Game " + (games + 1) + " is larger than " + MAX_GAME_BYTES + " bytes");
+            }
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, offset, size);
+            bufferOffset = offset;
+            limit = size;
+            endOfStream = offset + size == fileSize;
+        } else {
+            if (keep == 0 && limit == buffer.capacity()) {
+                if (buffer.capacity() >= MAX_GAME_BYTES) {
+                    throw new IllegalArgumentException("Game " + (games + 1) + " is larger than " + MAX_GAME_BYTES + " bytes");
+                }
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_GAME_BYTES));
+                System.arraycopy(buffer.array(), 0, larger.array(), 0, limit);
+                buffer = larger;
+            } else if (keep > 0) {
+                System.arraycopy(buffer.array(), keep, buffer.array(), 0, limit - keep);
+            }
+            bufferOffset += keep;
+            limit -= keep;
+            buffer.limit(buffer.capacity()).position(limit);
+            int read = channel.read(buffer);
+            if (read < 0) {
+                endOfStream = true;
+            } else {
+                limit += read;
+            }
+        }
+
+        position -= keep;
+        gameStart = 0;
+        if (movetextStart >= 0) {
+            movetextStart -= keep;
+            movetextEnd -= keep;
+        }
+        return keep;
+    }
+
+    // true when the line ends inside a brace comment, a semicolon comments out the rest of the line
+    private boolean scanComments(int from, int to, boolean inComment) {
+        for (int i = from; i < to; i++) {
+            byte c = buffer.get(i);
+            if (inComment) {
+                inComment = c != '}';
+            } else if (c == '{') {
+                inComment = true;
+            } else if (c == ';') {
+                break;
+            }
+        }
+        return inComment;
+    }
+
+    // [Name "value"] with backslash escapes in the value, values are UTF-8
+    private void parseTag(int from, int to, Map<String, String> tags) {
+        int nameStart = from;
+        while (nameStart < to && buffer.get(nameStart) <= ' ') {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < to && buffer.get(nameEnd) > ' ' && buffer.get(nameEnd) != '"') {
+            nameEnd++;
+        }
+        int quote = nameEnd;
+        while (quote < to && buffer.get(quote) != '"') {
+            quote++;
+        }
+        if (nameEnd == nameStart || quote == to) {
+            return;
+        }
+
+        int length = 0;
+        int i = quote + 1;
+        for (; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\' && i + 1 < to) {
+                c = buffer.get(++i);
+            }
+            if (length == scratch.length) {
+                scratch = Arrays.copyOf(scratch, length * 2);
+            }
+            scratch[length++] = c;
+        }
+        if (i == to) {
+            return;
+        }
+        byte[] name = new byte[nameEnd - nameStart];
+        buffer.get(nameStart, name);
+        tags.put(new String(name, StandardCharsets.US_ASCII), new String(scratch, 0, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,169 @@
+package chess.pgn;
+
+import chess.board.Position;
+import chess.piece.Move;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// replays the games of a PGN stream in parallel to validate them
+// the calling thread reads and splits the stream, batches of games go through a bounded queue to the replay threads,
+// so memory stays bounded however large the file is and a slow replay holds the reader back
+// every replay thread has its own position, games are handled in no particular order
+public class PgnReplay {
+    // receives every valid game with its final position, called on the replay threads
+    public interface GameHandler {
+        void handle(PgnGame game, Position position);
+    }
+
+    private static final int BATCH_SIZE = 64;
+    // tells a replay thread that the stream has ended
+    private static final List<PgnGame> END = new ArrayList<>(0);
+
+    private final int threads;
+    private final int queueCapacity;
+
+    public PgnReplay(int threads) {
+        this(threads, threads * 4);
+    }
+
+    // the queue holds at most queueCapacity batches of games
+    public PgnReplay(int threads, int queueCapacity) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads and queue capacity must be at least 1, were " + threads + " and " + queueCapacity);
+        }
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    // read all games and replay them, the handler may be null
+    // an exception thrown by the handler stops the replay and is rethrown wrapped in an IllegalStateException
+    public PgnReplayResult replay(PgnReader reader, GameHandler handler) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<List<PgnGame>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        PgnReplayResult[] results = new PgnReplayResult[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            PgnReplayResult result = new PgnReplayResult();
+            results[i] = result;
+            workers[i] = new Thread(() -> work(queue, handler, result, failure), "pgn-replay-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        try {
+            List<PgnGame> batch = new ArrayList<>(BATCH_SIZE);
+            PgnGame game;
+            while (failure.get() == null && (game = reader.next()) != null) {
+                batch.add(game);
+                if (batch.size() == BATCH_SIZE) {
+                    offer(queue, batch, failure);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                offer(queue, batch, failure);
+            }
+        } finally {
+            for (int i = 0; i < threads && failure.get() == null; i++) {
+                offer(queue, END, failure);
+            }
+            // after a failure the end markers are not all delivered, so the threads still waiting for a batch are woken
+            // up by an interrupt instead; the first failure is kept
+            if (failure.get() != null) {
+                queue.clear();
+                for (Thread worker : workers) {
+                    worker.interrupt();
+                }
+            }
+            for (Thread worker : workers) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        if (failure.get() != null) {
+            throw new IllegalStateException("Game handler failed", failure.get());
+        }
+        PgnReplayResult total = new PgnReplayResult();
+        for (PgnReplayResult result : results) {
+            total.add(result);
+        }
+        total.bytes = reader.getBytesRead();
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    // put a batch into the queue unless a replay thread has failed, then nobody may take it anymore
+    private static void offer(BlockingQueue<List<PgnGame>> queue, List<PgnGame> batch, AtomicReference<Throwable> failure) {
+        try {
+            while (failure.get() == null && !queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                // wait for room
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private static void work(BlockingQueue<List<PgnGame>> queue, GameHandler handler, PgnReplayResult result,
+                             AtomicReference<Throwable> failure) {
+        Position position = new Position(8);
+        int[] moves = new int[Move.MAX_MOVES];
+        try {
+            List<PgnGame> batch;
+            while ((batch = queue.take()) != END && failure.get() == null) {
+                for (PgnGame game : batch) {
+                    result.games++;
+                    try {
+                        game.replay(position, moves);
+                    } catch (IllegalArgumentException e) {
+                        result.addError(e.getMessage());
+                        continue;
+                    }
+                    result.moves += game.getMoveCount();
+                    if (handler != null) {
+                        handler.handle(game, position);
+                    }
+                }
+            }
+        } catch (InterruptedException | RuntimeException | Error e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    // usage: PgnReplay <file.pgn> [--threads n]
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        String path = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                path = args[i];
+            }
+        }
+        if (path == null) {
+            System.out.println("usage: PgnReplay <file.pgn> [--threads n]");
+            return;
+        }
+
+        try (PgnReader reader = PgnReader.open(Paths.get(path))) {
+            PgnReplayResult result = new PgnReplay(threads).replay(reader, null);
+            System.out.println(result);
+            for (String error : result.errors) {
+                System.out.println("  " + error);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package chess.pgn;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// counts of a parallel replay, invalid games are counted and the first of their errors are kept
+public class PgnReplayResult {
+    public static final int MAX_ERRORS = 100;
+
+    public long games;
+    public long moves;
+    public long invalid;
+    public long bytes;
+    public long nanos;
+    public final List<String> errors = new ArrayList<>();
+
+    public void addError(String error) {
+        invalid++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    // add the counts of another result
+    public void add(PgnReplayResult other) {
+        games += other.games;
+        moves += other.moves;
+        invalid += other.invalid;
+        for (String error : other.errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    public long gamesPerSecond() {
+        if (nanos <= 0) {
+            return 0;
+        }
+        return games * 1_000_000_000L / nanos;
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return "games " + games + ", invalid " + invalid + ", moves " + moves + ", " + bytes / (1024 * 1024) + " MB in "
+                + nanos / 1_000_000 + " ms, " + gamesPerSecond() + " games/s";
+    }
+}
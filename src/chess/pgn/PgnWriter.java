@@ -0,0 +1,117 @@
+package chess.pgn;
+
+import chess.board.Position;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+// writes games in export format: the seven tag roster first, then the other tags, then the movetext in san wrapped at
+// 80 columns and ended by the result, games are separated by a blank line, not for concurrent use
+public class PgnWriter implements Closeable, Flushable {
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_LENGTH = 80;
+
+    private final Writer out;
+    private final Position position = new Position(8);
+    private final int[] moves = new int[Move.MAX_MOVES];
+    private final StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+    private final StringBuilder token = new StringBuilder(16);
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static PgnWriter create(Path path) throws IOException {
+        return new PgnWriter(new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), 1 << 16));
+    }
+
+    // games read from a file are replayed first, which throws IllegalArgumentException for an illegal move
+    public void write(PgnGame game) throws IOException {
+        game.replay(position, moves);
+        position.loadFen(game.getStartFen());
+
+        Map<String, String> tags = game.getTags();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? game.getResult() : tags.get(name);
+            writeTag(name, value == null ? "?" : value);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey())) {
+                writeTag(tag.getKey(), tag.getValue());
+            }
+        }
+        out.write('\n');
+
+        line.setLength(0);
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            int move = game.getMove(i);
+            token.setLength(0);
+            if (position.getTurn() == Piece.Color.WHITE) {
+                token.append(position.getFullmoveNumber()).append(". ");
+            } else if (i == 0) {
+                token.append(position.getFullmoveNumber()).append("... ");
+            }
+            San.append(position, move, token, moves);
+            position.makeMove(move);
+            appendToken();
+        }
+        token.setLength(0);
+        token.append(game.getResult());
+        appendToken();
+        out.append(line).write("\n\n");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    // a move number stays on the line of its move
+    private void appendToken() throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            out.append(line).write('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write("\"]\n");
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String roster : SEVEN_TAG_ROSTER) {
+            if (roster.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
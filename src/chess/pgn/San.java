@@ -0,0 +1,219 @@
+package chess.pgn;
+
+import chess.bitboard.BitboardMoves;
+import chess.board.Position;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import static chess.bitboard.Bitboards.*;
+
+// standard algebraic notation like Nbd7, exd6, e8=Q+ or O-O-O, read and written against the legal moves of a position
+// moves are matched against the encoded legal moves, so neither direction allocates except for the written string
+public final class San {
+    // offset of the king inside the bitboards of one color, see Piece.index()
+    private static final int KING = 5;
+
+    private San() {
+    }
+
+    public static int parse(Position position, CharSequence san) {
+        return parse(position, san, 0, san.length(), new int[Move.MAX_MOVES]);
+    }
+
+    // the legal move written in san[start, end), the buffer needs room for Move.MAX_MOVES moves
+    // check, mate and annotation suffixes are ignored, castling may also be written with zeros
+    // only the pieces of the named type that fit the disambiguation have their moves generated
+    public static int parse(Position position, CharSequence san, int start, int end, int[] moves) {
+        while (end > start && isSuffix(san.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start < 2) {
+            throw new IllegalArgumentException("Invalid move " + san.subSequence(start, end));
+        }
+        int us = position.getTurn().ordinal() - 1;
+
+        char lead = san.charAt(start);
+        if (lead == 'O' || lead == '0') {
+            boolean queenside = end - start >= 5;
+            long king = position.getBitboard(us * 6 + KING);
+            int count = king == 0 ? 0 : BitboardMoves.generate(position, first(king), moves);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (Move.hasFlags(move, Move.CASTLE) && (Move.to(move) < Move.from(move)) == queenside) {
+                    return move;
+                }
+            }
+            throw illegal(position, san, start, end);
+        }
+
+        Piece.Type type = Piece.Type.PAWN;
+        int index = start;
+        if (lead >= 'A' && lead <= 'Z') {
+            type = pieceType(lead);
+            if (type == null || type == Piece.Type.PAWN) {
+                throw new IllegalArgumentException("Invalid move " + san.subSequence(start, end));
+            }
+            index++;
+        }
+
+        Piece.Type promotion = Piece.Type.NONE;
+        char last = san.charAt(end - 1);
+        if (type == Piece.Type.PAWN && last >= 'A' && last <= 'Z') {
+            promotion = pieceType(last);
+            end--;
+            if (end > index && san.charAt(end - 1) == '=') {
+                end--;
+            }
+        }
+
+        // destination square, everything between the piece letter and it is disambiguation or the capture sign
+        if (end - index < 2) {
+            throw new IllegalArgumentException("Invalid move " + san.subSequence(start, end));
+        }
+        int toX = san.charAt(end - 2) - 'a';
+        int toY = '8' - san.charAt(end - 1);
+        if (toX < 0 || toX > 7 || toY < 0 || toY > 7) {
+            throw new IllegalArgumentException("Invalid move " + san.subSequence(start, end));
+        }
+        long candidates = position.getBitboard(us * 6 + type.ordinal() - 1);
+        for (int i = index; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (c >= 'a' && c <= 'h') {
+                candidates &= FILE_A << (c - 'a');
+            } else if (c >= '1' && c <= '8') {
+                candidates &= ROW_0 << (('8' - c) * 8);
+            } else if (c != 'x' && c != ':' && c != '-') {
+                throw new IllegalArgumentException("Invalid move " + san.subSequence(start, end));
+            }
+        }
+
+        int to = toY * 8 + toX;
+        int found = Move.NONE;
+        while (candidates != 0) {
+            int from = first(candidates);
+            candidates &= candidates - 1;
+            int count = BitboardMoves.generate(position, from, moves);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (Move.to(move) != to || Move.promotion(move) != promotion || Move.hasFlags(move, Move.CASTLE)) {
+                    continue;
+                }
+                if (found != Move.NONE) {
+                    throw new IllegalArgumentException("Ambiguous move " + san.subSequence(start, end) + " in " + position.getFen());
+                }
+                found = move;
+            }
+        }
+        if (found == Move.NONE) {
+            throw illegal(position, san, start, end);
+        }
+        return found;
+    }
+
+    public static String toSan(Position position, Move move) {
+        return toSan(position, move.encode());
+    }
+
+    public static String toSan(Position position, int move) {
+        StringBuilder builder = new StringBuilder(8);
+        append(position, move, builder, new int[Move.MAX_MOVES]);
+        return builder.toString();
+    }
+
+    // write the san of a legal move of the position, the buffer needs room for Move.MAX_MOVES moves
+    // the move is made and unmade to find check and mate, the position is unchanged afterwards
+    public static void append(Position position, int move, StringBuilder builder, int[] moves) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        Piece.Type type = position.getPiece(from & 7, from >>> 3).type;
+
+        if (Move.hasFlags(move, Move.CASTLE)) {
+            builder.append(to > from ? "O-O" : "O-O-O");
+        } else if (type == Piece.Type.PAWN) {
+            if (Move.hasFlags(move, Move.CAPTURE)) {
+                builder.append((char) ('a' + (from & 7))).append('x');
+            }
+            appendSquare(builder, to);
+            if (Move.hasFlags(move, Move.PROMOTION)) {
+                builder.append('=').append(Piece.of(Piece.Color.WHITE, Move.promotion(move)).toFen());
+            }
+        } else {
+            builder.append(Piece.of(Piece.Color.WHITE, type).toFen());
+            appendDisambiguation(position, move, type, builder, moves);
+            if (Move.hasFlags(move, Move.CAPTURE)) {
+                builder.append('x');
+            }
+            appendSquare(builder, to);
+        }
+
+        position.makeMove(move);
+        Piece.Color turn = position.getTurn();
+        if (position.isCheck(turn)) {
+            builder.append(position.hasAnyLegalMove(turn) ? '+' : '#');
+        }
+        position.unmakeMove(move);
+    }
+
+    // file, rank or both of the from square when another piece of the type can move to the same square
+    private static void appendDisambiguation(Position position, int move, Piece.Type type, StringBuilder builder, int[] moves) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int us = position.getTurn().ordinal() - 1;
+        long others = position.getBitboard(us * 6 + type.ordinal() - 1) & ~(1L << from);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRow = false;
+        while (others != 0) {
+            int other = first(others);
+            others &= others - 1;
+            int count = BitboardMoves.generate(position, other, moves);
+            for (int i = 0; i < count; i++) {
+                if (Move.to(moves[i]) == to) {
+                    ambiguous = true;
+                    sameFile |= (other & 7) == (from & 7);
+                    sameRow |= (other >>> 3) == (from >>> 3);
+                    break;
+                }
+            }
+        }
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            builder.append((char) ('a' + (from & 7)));
+        } else if (!sameRow) {
+            builder.append((char) ('8' - (from >>> 3)));
+        } else {
+            appendSquare(builder, from);
+        }
+    }
+
+    private static void appendSquare(StringBuilder builder, int square) {
+        builder.append((char) ('a' + (square & 7))).append((char) ('8' - (square >>> 3)));
+    }
+
+    private static Piece.Type pieceType(char c) {
+        switch (c) {
+            case 'N':
+                return Piece.Type.KNIGHT;
+            case 'B':
+                return Piece.Type.BISHOP;
+            case 'R':
+                return Piece.Type.ROOK;
+            case 'Q':
+                return Piece.Type.QUEEN;
+            case 'K':
+                return Piece.Type.KING;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static IllegalArgumentException illegal(Position position, CharSequence san, int start, int end) {
+        return new IllegalArgumentException("Illegal move " + san.subSequence(start, end) + " in " + position.getFen());
+    }
+}
@@ -0,0 +1,128 @@
+package chess.piece;
+
+import chess.board.Position;
+
+import java.util.Arrays;
+
+// pinned pieces and check evasion squares of one color, computed once per position
+// a move of a piece other than the king is legal when it is allowed by this, except for en passant
+// which can uncover a check along the row and is still tested by making the move
+public class CheckInfo {
+    public final Piece.Color color;
+    public final int kingX;
+    public final int kingY;
+    // number of enemy pieces giving check
+    public int checkers;
+
+    private final int boardSize;
+    // for every square the direction a piece on it is pinned along, -1 when it is not pinned
+    private final int[] pinDirection;
+    // squares that capture the checking piece or block its ray, only used when there is one checker
+    private final boolean[] evasion;
+
+    private CheckInfo(Position position, Piece.Color color) {
+        this.color = color;
+        this.boardSize = position.boardSize;
+        this.kingX = position.getKingX(color);
+        this.kingY = position.getKingY(color);
+        this.pinDirection = new int[boardSize * boardSize];
+        this.evasion = new boolean[boardSize * boardSize];
+        Arrays.fill(pinDirection, -1);
+    }
+
+    // compute the pins and checks against the king of the color
+    public static CheckInfo of(Position position, Piece.Color color) {
+        CheckInfo info = new CheckInfo(position, color);
+        if (info.kingX < 0) {
+            return info;
+        }
+
+        int x = info.kingX;
+        int y = info.kingY;
+
+        // sliding pieces, a ray either ends at a checking piece or pins the only own piece in front of one
+        for (int direction = 0; direction < 8; direction++) {
+            int[] offset = LegalMoves.OFFSETS[direction];
+            int pinnedX = -1;
+            int pinnedY = -1;
+
+            for (int i = 1; i < position.boardSize; i++) {
+                int destinationX = x + offset[0] * i;
+                int destinationY = y + offset[1] * i;
+                Piece piece = position.getPiece(destinationX, destinationY);
+                if (piece == null) break;
+                if (piece.isNone()) continue;
+
+                if (piece.color == color) {
+                    if (pinnedX >= 0) break;
+                    pinnedX = destinationX;
+                    pinnedY = destinationY;
+                    continue;
+                }
+
+                boolean slidesHere = piece.isQueen() || (direction % 2 == 0 ? piece.isRook() : piece.isBishop());
+                if (slidesHere) {
+                    if (pinnedX >= 0) {
+                        info.pinDirection[pinnedY * info.boardSize + pinnedX] = direction;
+                    } else {
+                        info.checkers++;
+                        for (int j = 1; j <= i; j++) {
+                            info.evasion[(y + offset[1] * j) * info.boardSize + x + offset[0] * j] = true;
+                        }
+                    }
+                }
+                break;
+            }
+        }
+
+        // knights
+        for (int[] offset : LegalMoves.KNIGHT_OFFSETS) {
+            Piece piece = position.getPiece(x + offset[0], y + offset[1]);
+            if (piece != null && piece.isKnight() && piece.color != color) {
+                info.addChecker(x + offset[0], y + offset[1]);
+            }
+        }
+
+        // pawns attack the king from the rows in front of it
+        int pawnY = color == Piece.Color.WHITE ? y - 1 : y + 1;
+        for (int i = -1; i <= 1; i += 2) {
+            Piece piece = position.getPiece(x + i, pawnY);
+            if (piece != null && piece.isPawn() && !piece.isNone() && piece.color != color) {
+                info.addChecker(x + i, pawnY);
+            }
+        }
+
+        return info;
+    }
+
+    private void addChecker(int x, int y) {
+        checkers++;
+        evasion[y * boardSize + x] = true;
+    }
+
+    public boolean isCheck() {
+        return checkers > 0;
+    }
+
+    public boolean isPinned(int x, int y) {
+        return pinDirection[y * boardSize + x] >= 0;
+    }
+
+    // check if a piece other than the king may move between the squares without exposing its king
+    public boolean allows(int fromX, int fromY, int toX, int toY) {
+        if (checkers >= 2) return false;
+        if (checkers == 1 && !evasion[toY * boardSize + toX]) return false;
+
+        int pin = pinDirection[fromY * boardSize + fromX];
+        if (pin < 0) return true;
+
+        // a pinned piece may only move on the line between its king and the pinning piece
+        int dx = toX - fromX;
+        int dy = toY - fromY;
+        if (dx != 0 && dy != 0 && Math.abs(dx) != Math.abs(dy)) return false;
+        int[] offset = LegalMoves.OFFSETS[pin];
+        int stepX = Integer.signum(dx);
+        int stepY = Integer.signum(dy);
+        return (stepX == offset[0] && stepY == offset[1]) || (stepX == -offset[0] && stepY == -offset[1]);
+    }
+}
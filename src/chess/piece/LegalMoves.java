@@ -1,6 +1,6 @@
 package chess.piece;
 
-import chess.board.Board;
+import chess.board.Position;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,50 +48,17 @@ public class LegalMoves {
     }
 
     // static //
-    // return an offset array for the direction
+    // offsets are 0-top, 1-top right, 2-right, 3-bottom right, 4-bottom, 5-bottom left, 6-left, 7-top left
+    // first index is x, second is y
+    static final int[][] OFFSETS = {{0, -1}, {1, -1}, {1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}};
+
+    // return an offset array for the direction, the array is shared and must not be modified
     private static int[] getOffset(int direction) {
-        // offsets are 0-top, 1-top right, 2-right, 3-bottom right, 4-bottom, 5-bottom left, 6-left, 7-top left
-        // first index is x, second is y
-        int[] offset = new int[2];
-        switch (direction) {
-            case 0:
-                offset[0] = 0;
-                offset[1] = -1;
-                break;
-            case 1:
-                offset[0] = 1;
-                offset[1] = -1;
-                break;
-            case 2:
-                offset[0] = 1;
-                offset[1] = 0;
-                break;
-            case 3:
-                offset[0] = 1;
-                offset[1] = 1;
-                break;
-            case 4:
-                offset[0] = 0;
-                offset[1] = 1;
-                break;
-            case 5:
-                offset[0] = -1;
-                offset[1] = 1;
-                break;
-            case 6:
-                offset[0] = -1;
-                offset[1] = 0;
-                break;
-            case 7:
-                offset[0] = -1;
-                offset[1] = -1;
-                break;
-        }
-        return offset;
+        return OFFSETS[direction];
     }
 
     // check if there is a check at the position
-    public static boolean isCheck(int x, int y, Piece.Color color, Board board) {
+    public static boolean isCheck(int x, int y, Piece.Color color, Position position) {
         int destinationX;
         int destinationY;
         Piece pieceAtDestination;
@@ -100,10 +67,10 @@ public class LegalMoves {
         for (int direction = 0; direction < 8; direction += 2) {
             int[] offset = getOffset(direction);
 
-            for (int i = 1; i < board.boardSize; i++) {
+            for (int i = 1; i < position.boardSize; i++) {
                 destinationX = x + offset[0] * i;
                 destinationY = y + offset[1] * i;
-                pieceAtDestination = board.getPiece(destinationX, destinationY);
+                pieceAtDestination = position.getPiece(destinationX, destinationY);
                 if (pieceAtDestination == null) break;
 
                 if (pieceAtDestination.isNone()) continue;
@@ -120,10 +87,10 @@ public class LegalMoves {
         for (int direction = 1; direction < 8; direction += 2) {
             int[] offset = getOffset(direction);
 
-            for (int i = 1; i < board.boardSize; i++) {
+            for (int i = 1; i < position.boardSize; i++) {
                 destinationX = x + offset[0] * i;
                 destinationY = y + offset[1] * i;
-                pieceAtDestination = board.getPiece(destinationX, destinationY);
+                pieceAtDestination = position.getPiece(destinationX, destinationY);
 
                 if (pieceAtDestination == null) break;
 
@@ -141,7 +108,7 @@ public class LegalMoves {
         for (int[] offset : KNIGHT_OFFSETS) {
             destinationX = x + offset[0];
             destinationY = y + offset[1];
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
 
             if (pieceAtDestination == null) continue;
             if (pieceAtDestination.isNone()) continue;
@@ -158,11 +125,11 @@ public class LegalMoves {
 
             destinationX = x + offset[0];
             destinationY = y + offset[1];
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
 
             if (pieceAtDestination == null) continue;
             if (pieceAtDestination.isNone()) continue;
-            if (pieceAtDestination.color == color) break;
+            if (pieceAtDestination.color == color) continue;
 
             if (pieceAtDestination.isPawn()) {
                 if (color == Piece.Color.WHITE) {
@@ -182,11 +149,11 @@ public class LegalMoves {
             int[] offset = getOffset(i);
             destinationX = x + offset[0];
             destinationY = y + offset[1];
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
 
             if (pieceAtDestination == null) continue;
             if (pieceAtDestination.isNone()) continue;
-            if (pieceAtDestination.color == color) break;
+            if (pieceAtDestination.color == color) continue;
 
             if (pieceAtDestination.isKing()) {
                 return true;
@@ -196,33 +163,16 @@ public class LegalMoves {
         return false;
     }
 
-    // check if is in check after move
-    public static boolean isCheckAfterMove(int x, int y, Piece.Color color, Move move, Board board) {
-        Piece referencePiece = null;
-        if (move.hasFlags(Move.EN_PASSANT)) {
-            referencePiece = board.getPiece(move.referenceX, move.referenceY);
-            board.setPiece(Piece.NONE, move.referenceX, move.referenceY);
-        }
-
-        Piece pieceAtDestination = board.getPiece(move.toX, move.toY);
-        Piece pieceAtSource = board.getPiece(move.fromX, move.fromY);
-
-        board.setPiece(pieceAtSource, move.toX, move.toY);
-        board.setPiece(Piece.NONE, move.fromX, move.fromY);
-
-        boolean isCheck = isCheck(x, y, color, board);
-
-        board.setPiece(pieceAtSource, move.fromX, move.fromY);
-        board.setPiece(pieceAtDestination, move.toX, move.toY);
-
-        if (move.hasFlags(Move.EN_PASSANT)) {
-            board.setPiece(referencePiece, move.referenceX, move.referenceY);
-        }
+    // check if is in check after move, the move is made and taken back on the position
+    public static boolean isCheckAfterMove(int x, int y, Piece.Color color, Move move, Position position) {
+        position.makeMove(move);
+        boolean isCheck = isCheck(x, y, color, position);
+        position.unmakeMove(move);
 
         return isCheck;
     }
 
-    private static LegalMoves getLegalMovesForSlidingPiece(Piece piece, int x, int y, Board board) {
+    private static LegalMoves getLegalMovesForSlidingPiece(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         LegalMoves legalMoves = new LegalMoves();
         Piece pieceAtDestination;
         int destinationX;
@@ -232,34 +182,32 @@ public class LegalMoves {
         int directionStep = (piece.isBishop() || piece.isRook()) ? 2 : 1;
 
         for (int direction = startDirection; direction < 8; direction += directionStep) {
+            int[] offset = getOffset(direction);
 
-            for (int j = 1; j < board.boardSize; j++) {
-                int[] offset = getOffset(direction);
+            for (int j = 1; j < position.boardSize; j++) {
                 destinationX = x + offset[0] * j;
                 destinationY = y + offset[1] * j;
-                pieceAtDestination = board.getPiece(destinationX, destinationY);
+                pieceAtDestination = position.getPiece(destinationX, destinationY);
 
                 if (pieceAtDestination == null || pieceAtDestination.isSameColor(piece)) {
                     break;
                 }
 
-                Move move = new Move(x, y, destinationX, destinationY);
-
-                int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-                boolean isInCheck = isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board);
+                boolean allowed = checkInfo.allows(x, y, destinationX, destinationY);
 
-                if (!pieceAtDestination.isSameColor(piece) && pieceAtDestination.color != Piece.Color.NONE && !isInCheck) {
-                    move.setReferance(destinationX, destinationY);
-                    move.addFlags(Move.CAPTURE);
-                    legalMoves.add(move);
-                    break;
-                } else if (pieceAtDestination.isSameColor(piece) && pieceAtDestination.color != Piece.Color.NONE) {
+                // the ray stops at an enemy piece even if capturing it leaves the king in check
+                if (!pieceAtDestination.isNone()) {
+                    if (allowed) {
+                        Move move = new Move(x, y, destinationX, destinationY, Move.CAPTURE);
+                        move.setReferance(destinationX, destinationY);
+                        legalMoves.add(move);
+                    }
                     break;
                 }
 
-                if (isInCheck) continue;
+                if (!allowed) continue;
 
-                legalMoves.add(move);
+                legalMoves.add(new Move(x, y, destinationX, destinationY));
             }
         }
 
@@ -267,9 +215,9 @@ public class LegalMoves {
     }
 
     // array of offsets for knight
-    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
 
-    private static LegalMoves getLegalMovesForKnight(Piece piece, int x, int y, Board board) {
+    private static LegalMoves getLegalMovesForKnight(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         LegalMoves legalMoves = new LegalMoves();
         Piece pieceAtDestination;
         int destinationX;
@@ -278,27 +226,21 @@ public class LegalMoves {
         for (int[] offset : KNIGHT_OFFSETS) {
             destinationX = x + offset[0];
             destinationY = y + offset[1];
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
             if (pieceAtDestination == null || pieceAtDestination.isSameColor(piece)) continue;
+            if (!checkInfo.allows(x, y, destinationX, destinationY)) continue;
 
             Move move = new Move(x, y, destinationX, destinationY);
-            int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-            if (pieceAtDestination.isNone()) {
-                if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                    legalMoves.add(move);
-                }
-            } else {
+            if (!pieceAtDestination.isNone()) {
                 move.setReferance(destinationX, destinationY);
                 move.addFlags(Move.CAPTURE);
-                if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                    legalMoves.add(move);
-                }
             }
+            legalMoves.add(move);
         }
         return legalMoves;
     }
 
-    private static LegalMoves getLegalMovesForKing(Piece piece, int x, int y, Board board) {
+    private static LegalMoves getLegalMovesForKing(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         LegalMoves legalMoves = new LegalMoves();
         Piece pieceAtDestination;
         int destinationX;
@@ -307,62 +249,44 @@ public class LegalMoves {
         for (int i = 0; i < 8; i++) {
             destinationX = x + getOffset(i)[0];
             destinationY = y + getOffset(i)[1];
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
-            if (pieceAtDestination == null) continue;
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
+            if (pieceAtDestination == null || pieceAtDestination.isSameColor(piece)) continue;
 
+            // the king leaves its square, so it can not block a ray to its destination
             Move move = new Move(x, y, destinationX, destinationY);
-
-            if (isCheck(destinationX, destinationY, piece.color, board) || isCheckAfterMove(destinationX, destinationY, piece.color, move, board))
-                continue;
-
-
-            if (pieceAtDestination.isNone()) {
-                legalMoves.add(move);
-            } else if (!pieceAtDestination.isSameColor(piece)) {
+            if (!pieceAtDestination.isNone()) {
+                move.setReferance(destinationX, destinationY);
                 move.addFlags(Move.CAPTURE);
-                legalMoves.add(move);
             }
+            if (isCheckAfterMove(destinationX, destinationY, piece.color, move, position)) continue;
+
+            legalMoves.add(move);
         }
 
-        legalMoves.addAll(getLegalMovesForCastling(piece, x, y, board));
+        legalMoves.addAll(getLegalMovesForCastling(piece, x, y, position, checkInfo));
 
         return legalMoves;
     }
 
-    // get legal move for castling
-    private static LegalMoves getLegalMovesForCastling(Piece piece, int x, int y, Board board) {
+    // get legal move for castling, based on the castling rights of the position
+    private static LegalMoves getLegalMovesForCastling(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         LegalMoves legalMoves = new LegalMoves();
         if (piece.type != Piece.Type.KING) return legalMoves;
-        if (piece.moved) return legalMoves;
-        if (isCheck(x, y, piece.color, board)) return legalMoves;
+        if (x != position.kingStartX() || y != position.homeRow(piece.color)) return legalMoves;
+        if (checkInfo.isCheck()) return legalMoves;
 
+        int kingside = piece.isWhite() ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = piece.isWhite() ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
         int rook1X = 0;
-        int rook2X = 7;
-
-        for (int i = x - 1; i >= 0; i--) {
-            if (board.getPiece(i, y) != null) {
-                if (!board.getPiece(i, y).isNone() || isCheck(i, y, piece.color, board)) {
-                    rook1X = i;
-                    break;
-                }
-            }
-        }
-        for (int i = x + 1; i < board.width; i++) {
-            if (board.getPiece(i, y) != null) {
-                if (!board.getPiece(i, y).isNone() || isCheck(i, y, piece.color, board)) {
-                    rook2X = i;
-                    break;
-                }
-            }
-        }
+        int rook2X = position.boardSize - 1;
 
-        if (rook1X == 0 && board.getPiece(rook1X, y).isRook() && !board.getPiece(rook1X, y).moved && board.getPiece(rook1X, y).isSameColor(piece)) {
+        if (position.hasCastlingRights(queenside) && canCastleWith(piece, x, y, rook1X, position)) {
             Move move = new Move(x, y, x - 2, y, Move.CASTLE);
             move.setReferance(rook1X, y);
             legalMoves.add(move);
         }
 
-        if (rook2X == 7 && board.getPiece(rook2X, y).isRook() && !board.getPiece(rook2X, y).moved && board.getPiece(rook2X, y).isSameColor(piece)) {
+        if (position.hasCastlingRights(kingside) && canCastleWith(piece, x, y, rook2X, position)) {
             Move move = new Move(x, y, x + 2, y, Move.CASTLE);
             move.setReferance(rook2X, y);
             legalMoves.add(move);
@@ -371,40 +295,52 @@ public class LegalMoves {
         return legalMoves;
     }
 
-    private static LegalMoves getLegalMovesForPawn(Piece piece, int x, int y, Board board) {
+    // squares between king and rook must be empty and the king must not pass through or land on an attacked square
+    private static boolean canCastleWith(Piece king, int x, int y, int rookX, Position position) {
+        Piece rook = position.getPiece(rookX, y);
+        if (rook == null || !rook.isRook() || !rook.isSameColor(king)) return false;
+
+        int step = rookX < x ? -1 : 1;
+        for (int i = x + step; i != rookX; i += step) {
+            if (!position.getPiece(i, y).isNone()) return false;
+        }
+        for (int i = 1; i <= 2; i++) {
+            if (isCheck(x + step * i, y, king.color, position)) return false;
+        }
+        return true;
+    }
+
+    private static LegalMoves getLegalMovesForPawn(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         LegalMoves legalMoves = new LegalMoves();
         Piece pieceAtDestination;
         int destinationX;
         int destinationY;
 
         int direction = piece.color == Piece.Color.WHITE ? -1 : 1;
+        int startRow = position.homeRow(piece.color) + direction;
 
         // check for one step forward
         destinationX = x;
         destinationY = y + direction;
-        pieceAtDestination = board.getPiece(destinationX, destinationY);
+        pieceAtDestination = position.getPiece(destinationX, destinationY);
         if (pieceAtDestination != null && pieceAtDestination.isNone()) {
-            Move move = new Move(x, y, destinationX, destinationY);
-            int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-            if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                legalMoves.add(move);
+            if (checkInfo.allows(x, y, destinationX, destinationY)) {
+                addPawnMove(legalMoves, new Move(x, y, destinationX, destinationY), position);
             }
         }
 
         // check for two-step forward
-        if (!board.getPiece(x, y).moved) {
+        if (y == startRow) {
             destinationX = x;
             destinationY = y + direction;
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
             if (pieceAtDestination != null && pieceAtDestination.isNone()) {
                 destinationX = x;
                 destinationY = y + 2 * direction;
-                pieceAtDestination = board.getPiece(destinationX, destinationY);
+                pieceAtDestination = position.getPiece(destinationX, destinationY);
                 if (pieceAtDestination != null && pieceAtDestination.isNone()) {
-                    Move move = new Move(x, y, destinationX, destinationY, Move.DOUBLE_PAWN_PUSH);
-                    int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-                    if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                        legalMoves.add(move);
+                    if (checkInfo.allows(x, y, destinationX, destinationY)) {
+                        legalMoves.add(new Move(x, y, destinationX, destinationY, Move.DOUBLE_PAWN_PUSH));
                     }
                 }
             }
@@ -414,33 +350,27 @@ public class LegalMoves {
         for (int i = -1; i <= 1; i += 2) {
             destinationX = x + i;
             destinationY = y + direction;
-            pieceAtDestination = board.getPiece(destinationX, destinationY);
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
             if (pieceAtDestination != null && !pieceAtDestination.isNone() && !pieceAtDestination.isSameColor(piece)) {
-                Move move = new Move(x, y, destinationX, destinationY, Move.CAPTURE);
-                int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-                if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                    legalMoves.add(move);
+                if (checkInfo.allows(x, y, destinationX, destinationY)) {
+                    Move move = new Move(x, y, destinationX, destinationY, Move.CAPTURE);
+                    move.setReferance(destinationX, destinationY);
+                    addPawnMove(legalMoves, move, position);
                 }
             }
         }
 
-        // check for en passant
-        if (board.getPiece(x, y).moved) {
-            for (int i = -1; i <= 1; i += 2) {
-                destinationX = x + i;
-                destinationY = y;
-                pieceAtDestination = board.getPiece(destinationX, destinationY);
-                if (pieceAtDestination != null && !pieceAtDestination.isSameColor(piece)) {
-                    if (pieceAtDestination.isPawn() && pieceAtDestination.pawnPushedTwice) {
-                        if (board.getPiece(destinationX, destinationY + direction) == null || board.getPiece(destinationX, destinationY + direction).isNone()) {
-                            Move move = new Move(x, y, destinationX, destinationY + direction, Move.EN_PASSANT);
-                            move.setReferance(destinationX, destinationY);
-                            int[] kingPos = board.findPiece(Piece.Type.KING, piece.color);
-                            if (!isCheckAfterMove(kingPos[0], kingPos[1], piece.color, move, board)) {
-                                legalMoves.add(move);
-                            }
-                        }
-                    }
+        // check for en passant on the square the position marks as skipped by a double pawn push
+        if (position.getEnPassantY() == y + direction && Math.abs(position.getEnPassantX() - x) == 1) {
+            destinationX = position.getEnPassantX();
+            destinationY = y;
+            pieceAtDestination = position.getPiece(destinationX, destinationY);
+            if (pieceAtDestination != null && pieceAtDestination.isPawn() && !pieceAtDestination.isSameColor(piece)) {
+                Move move = new Move(x, y, destinationX, destinationY + direction, Move.EN_PASSANT | Move.CAPTURE);
+                move.setReferance(destinationX, destinationY);
+                // removing two pawns from one row can uncover a check the masks do not see, so make the move
+                if (!isCheckAfterMove(checkInfo.kingX, checkInfo.kingY, piece.color, move, position)) {
+                    legalMoves.add(move);
                 }
             }
         }
@@ -448,17 +378,72 @@ public class LegalMoves {
         return legalMoves;
     }
 
-    public static LegalMoves getLegalMoves(Piece piece, int x, int y, Board board) {
+    // pieces a pawn can promote to, the first one is used when the ui does not ask
+    private static final Piece.Type[] PROMOTION_TYPES = {Piece.Type.QUEEN, Piece.Type.ROOK, Piece.Type.BISHOP, Piece.Type.KNIGHT};
+
+    // add pawn move, or one move for every promotion when the pawn reaches the last row
+    private static void addPawnMove(LegalMoves legalMoves, Move move, Position position) {
+        if (move.toY != 0 && move.toY != position.boardSize - 1) {
+            legalMoves.add(move);
+            return;
+        }
+
+        for (Piece.Type type : PROMOTION_TYPES) {
+            Move promotion = new Move(move.fromX, move.fromY, move.toX, move.toY, move.flags);
+            promotion.setReferance(move.referenceX, move.referenceY);
+            promotion.setPromotion(type);
+            legalMoves.add(promotion);
+        }
+    }
+
+    public static LegalMoves getLegalMoves(Piece piece, int x, int y, Position position) {
+        if (piece.isNone()) {
+            return null;
+        }
+        return getLegalMoves(piece, x, y, position, CheckInfo.of(position, piece.color));
+    }
+
+    // get legal moves of the piece with pins and checks that are already computed for its color
+    public static LegalMoves getLegalMoves(Piece piece, int x, int y, Position position, CheckInfo checkInfo) {
         if (piece.isSliding()) {
-            return getLegalMovesForSlidingPiece(piece, x, y, board);
+            return getLegalMovesForSlidingPiece(piece, x, y, position, checkInfo);
         } else if (piece.isKnight()) {
-            return getLegalMovesForKnight(piece, x, y, board);
+            return getLegalMovesForKnight(piece, x, y, position, checkInfo);
         } else if (piece.isKing()) {
-            return getLegalMovesForKing(piece, x, y, board);
+            return getLegalMovesForKing(piece, x, y, position, checkInfo);
         } else if (piece.isPawn()) {
-            return getLegalMovesForPawn(piece, x, y, board);
+            return getLegalMovesForPawn(piece, x, y, position, checkInfo);
         }
 
         return null;
     }
+
+    // get legal moves of all pieces of the side to move
+    public static LegalMoves getAllLegalMoves(Position position) {
+        LegalMoves legalMoves = new LegalMoves();
+        CheckInfo checkInfo = CheckInfo.of(position, position.getTurn());
+        for (int i = 0; i < position.boardSize; i++) {
+            for (int j = 0; j < position.boardSize; j++) {
+                Piece piece = position.getPiece(i, j);
+                if (piece.color == position.getTurn()) {
+                    legalMoves.addAll(getLegalMoves(piece, i, j, position, checkInfo));
+                }
+            }
+        }
+        return legalMoves;
+    }
+
+    // check if the color has at least one legal move, stops at the first piece that has one
+    public static boolean hasAnyLegalMove(Position position, Piece.Color color) {
+        CheckInfo checkInfo = CheckInfo.of(position, color);
+        for (int i = 0; i < position.boardSize; i++) {
+            for (int j = 0; j < position.boardSize; j++) {
+                Piece piece = position.getPiece(i, j);
+                if (piece.color == color && !getLegalMoves(piece, i, j, position, checkInfo).isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
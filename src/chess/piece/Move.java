@@ -7,6 +7,14 @@ public class Move {
     public static final int EN_PASSANT = 8;
     public static final int PROMOTION = 16;
 
+    // encoded moves are ints for the 8x8 board: bits 0-5 from square, 6-11 to square, 12-16 flags
+    // and 17-19 the promotion type ordinal, squares are y * 8 + x
+    public static final int NONE = 0;
+    // no position has more legal moves than this, buffers for encoded moves can use it as their size
+    public static final int MAX_MOVES = 256;
+
+    private static final Piece.Type[] TYPES = Piece.Type.values();
+
     public int fromX;
     public int fromY;
     public int toX;
@@ -14,6 +22,7 @@ public class Move {
     public int flags;
     public int referenceX;
     public int referenceY;
+    public Piece.Type promotion = Piece.Type.NONE;
 
     public Move(int fromX, int fromY, int toX, int toY) {
         this.fromX = fromX;
@@ -27,12 +36,92 @@ public class Move {
         this.flags = flags;
     }
 
+    // encode a move, the reference square is implied by the flags
+    public static int encode(int from, int to, int flags, Piece.Type promotion) {
+        return from | (to << 6) | (flags << 12) | (promotion.ordinal() << 17);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 0x1F;
+    }
+
+    public static boolean hasFlags(int move, int flags) {
+        return (flags(move) & flags) != 0;
+    }
+
+    public static Piece.Type promotion(int move) {
+        return TYPES[(move >>> 17) & 0x7];
+    }
+
+    // square of the piece the move captures or the rook it castles with, the to square otherwise
+    public static int reference(int move) {
+        int from = from(move);
+        int to = to(move);
+        if (hasFlags(move, EN_PASSANT)) {
+            return (from & ~7) | (to & 7);
+        }
+        if (hasFlags(move, CASTLE)) {
+            return (from & ~7) | (to > from ? 7 : 0);
+        }
+        return to;
+    }
+
+    // object view of an encoded move
+    public static Move decode(int move) {
+        int from = from(move);
+        int to = to(move);
+        Move decoded = new Move(from & 7, from >>> 3, to & 7, to >>> 3, flags(move));
+        if (decoded.hasFlags(CAPTURE | CASTLE)) {
+            int reference = reference(move);
+            decoded.setReferance(reference & 7, reference >>> 3);
+        }
+        decoded.promotion = promotion(move);
+        return decoded;
+    }
+
+    // coordinate notation of an encoded move like e2e4 or e7e8q
+    public static String toUci(int move) {
+        if (move == NONE) {
+            return "0000";
+        }
+        StringBuilder builder = new StringBuilder(5);
+        appendSquare(builder, from(move));
+        appendSquare(builder, to(move));
+        if (hasFlags(move, PROMOTION)) {
+            builder.append(Character.toLowerCase(Piece.of(Piece.Color.WHITE, promotion(move)).toFen()));
+        }
+        return builder.toString();
+    }
+
+    private static void appendSquare(StringBuilder builder, int square) {
+        builder.append((char) ('a' + (square & 7))).append((char) ('8' - (square >>> 3)));
+    }
+
+    // encoded form of this move, only for the 8x8 board
+    public int encode() {
+        return encode(fromY * 8 + fromX, toY * 8 + toX, flags, promotion);
+    }
+
     // set the reference square
     public void setReferance(int x, int y) {
         referenceX = x;
         referenceY = y;
     }
 
+    // set the piece a pawn is promoted to
+    public void setPromotion(Piece.Type promotion) {
+        this.promotion = promotion;
+        addFlags(PROMOTION);
+    }
+
     // set flags
     public void setFlags(int flags) {
         this.flags = flags;
@@ -1,11 +1,5 @@
 package chess.piece;
 
-import processing.core.PImage;
-import vector.Vector2;
-
-import java.util.ArrayList;
-import java.util.List;
-
 public class Piece {
     public enum Color {
         NONE,
@@ -21,28 +15,26 @@ public class Piece {
 
     public final Color color;
     public final Type type;
-    public boolean moved;
-    public boolean showOnBoard = true;
-    public boolean pawnPushedTwice = true;
-    private List<String> flags = new ArrayList<>();
 
-    public Piece(Color color, Type type) {
-        this.color = color;
-        this.type = type;
-        this.moved = false;
-    }
+    // shared instances indexed by color and type ordinal
+    private static final Piece[][] PIECES = new Piece[Color.values().length][Type.values().length];
 
-    // add, remove and check if has custom flags
-    public void addFlag(String flag) {
-        flags.add(flag);
+    static {
+        for (Color color : Color.values()) {
+            for (Type type : Type.values()) {
+                PIECES[color.ordinal()][type.ordinal()] = color == Color.NONE || type == Type.NONE ? NONE : new Piece(color, type);
+            }
+        }
     }
 
-    public void removeFlag(String flag) {
-        flags.remove(flag);
+    public Piece(Color color, Type type) {
+        this.color = color;
+        this.type = type;
     }
 
-    public boolean hasFlag(String flag) {
-        return flags.contains(flag);
+    // shared piece of the color and type, used where moves must not allocate
+    public static Piece of(Color color, Type type) {
+        return PIECES[color.ordinal()][type.ordinal()];
     }
 
     // methods returning booleans if the piece is every color
@@ -84,33 +76,41 @@ public class Piece {
         return this.isRook() || this.isBishop() || this.isQueen();
     }
 
+    // index of the piece in per piece bitboard arrays, white pieces 0-5 and black pieces 6-11, -1 for none
+    public int index() {
+        if (isNone()) {
+            return -1;
+        }
+        return (color.ordinal() - 1) * 6 + type.ordinal() - 1;
+    }
+
     // static method that returns the piece from fen char
     public static Piece fromFen(char c) {
         switch (c) {
             case 'P':
-                return new Piece(Color.WHITE, Type.PAWN);
+                return of(Color.WHITE, Type.PAWN);
             case 'p':
-                return new Piece(Color.BLACK, Type.PAWN);
+                return of(Color.BLACK, Type.PAWN);
             case 'N':
-                return new Piece(Color.WHITE, Type.KNIGHT);
+                return of(Color.WHITE, Type.KNIGHT);
             case 'n':
-                return new Piece(Color.BLACK, Type.KNIGHT);
+                return of(Color.BLACK, Type.KNIGHT);
             case 'B':
-                return new Piece(Color.WHITE, Type.BISHOP);
+                return of(Color.WHITE, Type.BISHOP);
             case 'b':
-                return new Piece(Color.BLACK, Type.BISHOP);
+                return of(Color.BLACK, Type.BISHOP);
             case 'R':
-                return new Piece(Color.WHITE, Type.ROOK);
+                return of(Color.WHITE, Type.ROOK);
             case 'r':
-                return new Piece(Color.BLACK, Type.ROOK);
+                return of(Color.BLACK, Type.ROOK);
             case 'Q':
-                return new Piece(Color.WHITE, Type.QUEEN);
+                return of(Color.WHITE, Type.QUEEN);
             case 'q':
-                return new Piece(Color.BLACK, Type.QUEEN);
+                return of(Color.BLACK, Type.QUEEN);
             case 'K':
-                return new Piece(Color.WHITE, Type.KING);
+                return of(Color.WHITE, Type.KING);
             case 'k':
-                return new Piece(Color.BLACK, Type.KING);
+                return of(Color.BLACK, Type.KING);
             default:
                 return null;
         }
@@ -145,6 +145,12 @@ public class Piece {
         return false;
     }
 
+    // equal pieces have equal hash codes, so pieces work as keys of hash maps
+    @Override
+    public int hashCode() {
+        return color.ordinal() * 8 + type.ordinal();
+    }
+
     // toFen char
     public char toFen() {
         switch (this.type) {
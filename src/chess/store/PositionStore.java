@@ -0,0 +1,148 @@
+package chess.store;
+
+import chess.board.PackedPosition;
+import chess.board.Position;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// positions packed by PackedPosition in a file written by PositionStoreWriter, read through memory-mapped windows
+// the file is a 32 byte header followed by the positions, so position i is at 32 * (i + 1) and every window holds
+// whole positions; files of any size are mapped, a window covers 1 GB
+// only the positions written when the store is opened are seen, a torn position at the end is ignored
+// reads only use the mappings and may run on any number of threads
+public class PositionStore implements Closeable {
+    static final int MAGIC = 0x43485053;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = PackedPosition.BYTES;
+
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_BYTES = 1L << WINDOW_SHIFT;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] windows;
+    private final long size;
+
+    private PositionStore(FileChannel channel, ByteBuffer[] windows, long size) {
+        this.channel = channel;
+        this.windows = windows;
+        this.size = size;
+    }
+
+    public static PositionStore open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            checkHeader(channel, path);
+            long size = (channel.size() - HEADER_BYTES) / PackedPosition.BYTES;
+            long bytes = size * PackedPosition.BYTES;
+            ByteBuffer[] windows = new ByteBuffer[(int) ((bytes + WINDOW_BYTES - 1) >>> WINDOW_SHIFT)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << WINDOW_SHIFT;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + start, Math.min(WINDOW_BYTES, bytes - start));
+            }
+            return new PositionStore(channel, windows, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // read and check the header, throws IllegalArgumentException when the file is not a position store
+    static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IllegalArgumentException(path + " is not a position store");
+        }
+    }
+
+    static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.clear();
+        return header;
+    }
+
+    // number of positions
+    public long size() {
+        return size;
+    }
+
+    // load position i into the position
+    public void get(long index, Position position) {
+        checkIndex(index);
+        PackedPosition.read(position, window(index), offset(index));
+    }
+
+    // copy the 32 packed bytes of position i
+    public void get(long index, byte[] bytes) {
+        checkIndex(index);
+        window(index).get(offset(index), bytes, 0, PackedPosition.BYTES);
+    }
+
+    // visit the positions [from, to) in order, all loaded into the same position object
+    public void scan(long from, long to, PositionVisitor visitor) {
+        if (from < 0 || to > size || from > to) {
+            throw new IllegalArgumentException("Range " + from + " to " + to + " outside of " + size + " positions");
+        }
+        Position position = new Position(8);
+        for (long index = from; index < to; index++) {
+            PackedPosition.read(position, window(index), offset(index));
+            visitor.visit(index, position);
+        }
+    }
+
+    public void scan(PositionVisitor visitor) {
+        scan(0, size, visitor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Position " + index + " of " + size);
+        }
+    }
+
+    private ByteBuffer window(long index) {
+        return windows[(int) ((index * PackedPosition.BYTES) >>> WINDOW_SHIFT)];
+    }
+
+    private static int offset(long index) {
+        return (int) ((index * PackedPosition.BYTES) & (WINDOW_BYTES - 1));
+    }
+
+    // usage: PositionStore <positions.bin> [--scan] [--print n]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: PositionStore <positions.bin> [--scan] [--print n]");
+            return;
+        }
+        try (PositionStore store = open(Paths.get(args[0]))) {
+            System.out.println(args[0] + ": " + store.size() + " positions");
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--print")) {
+                    long count = Math.min(Long.parseLong(args[++i]), store.size());
+                    store.scan(0, count, (index, position) -> System.out.println(index + " " + position.getFen()));
+                } else if (args[i].equals("--scan")) {
+                    long start = System.nanoTime();
+                    long[] pieces = new long[1];
+                    store.scan((index, position) -> pieces[0] += Long.bitCount(position.getOccupancy()));
+                    long nanos = Math.max(1, System.nanoTime() - start);
+                    System.out.println("scanned " + store.size() + " positions in " + nanos / 1_000_000 + " ms, "
+                            + store.size() * 1_000_000_000L / nanos + " per second, " + pieces[0] + " pieces");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package chess.store;
+
+import chess.board.PackedPosition;
+import chess.board.Position;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// appends packed positions to a position store, creating the file with its header when it is empty
+// positions are collected in a buffer and written in large blocks, a torn position left at the end of the file by an
+// earlier writer is cut off before appending; not for concurrent use
+public class PositionStoreWriter implements Closeable {
+    private static final int BUFFER_POSITIONS = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_POSITIONS * PackedPosition.BYTES);
+    private long size;
+
+    private PositionStoreWriter(FileChannel channel, long size) {
+        this.channel = channel;
+        this.size = size;
+    }
+
+    public static PositionStoreWriter open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = PositionStore.header();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } else {
+                PositionStore.checkHeader(channel, path);
+            }
+            long size = (channel.size() - PositionStore.HEADER_BYTES) / PackedPosition.BYTES;
+            long end = PositionStore.HEADER_BYTES + size * PackedPosition.BYTES;
+            channel.truncate(end);
+            channel.position(end);
+            return new PositionStoreWriter(channel, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public void append(Position position) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        PackedPosition.write(position, buffer, buffer.position());
+        buffer.position(buffer.position() + PackedPosition.BYTES);
+        size++;
+    }
+
+    // positions in the file including the buffered ones
+    public long size() {
+        return size;
+    }
+
+    // write the buffered positions to the file
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // usage: PositionStoreWriter <positions.bin> <games.pgn>...
+    // appends every position of every game, the start positions included
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: PositionStoreWriter <positions.bin> <games.pgn>...");
+            return;
+        }
+        Position position = new Position(8);
+        int[] buffer = new int[256];
+        long start = System.nanoTime();
+        try (PositionStoreWriter writer = open(Paths.get(args[0]))) {
+            long before = writer.size();
+            long invalid = 0;
+            for (int i = 1; i < args.length; i++) {
+                try (PgnReader reader = PgnReader.open(Paths.get(args[i]))) {
+                    PgnGame game;
+                    while ((game = reader.next()) != null) {
+                        try {
+                            game.replay(position, buffer);
+                        } catch (IllegalArgumentException e) {
+                            invalid++;
+                            continue;
+                        }
+                        position.loadFen(game.getStartFen());
+                        writer.append(position);
+                        for (int ply = 0; ply < game.getMoveCount(); ply++) {
+                            position.makeMove(game.getMove(ply));
+                            writer.append(position);
+                        }
+                    }
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println(args[0] + ": appended " + (writer.size() - before) + " positions in " + millis + " ms, "
+                    + writer.size() + " in total, " + invalid + " invalid games skipped");
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package chess.store;
+
+import chess.board.Position;
+
+// called for every position of a scan, the position object is reused for the next one
+public interface PositionVisitor {
+    void visit(long index, Position position);
+}
@@ -0,0 +1,175 @@
+package chess.tablebase;
+
+import chess.board.Position;
+import chess.piece.Piece;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// the pieces of an endgame like KQvK or KRPvKR, the king first and the others ordered queen, rook, bishop, knight, pawn
+// tables are stored for the canonical side only, the stronger one as white, positions of the other side are probed
+// with the colors swapped and the board mirrored
+public final class Material {
+    private static final String LETTERS = "KQRBNP";
+    private static final Piece.Type[] TYPES = {Piece.Type.KING, Piece.Type.QUEEN, Piece.Type.ROOK, Piece.Type.BISHOP, Piece.Type.KNIGHT, Piece.Type.PAWN};
+    private static final int[] VALUES = {0, 9, 5, 3, 3, 1};
+
+    public final String name;
+    // indexed by color, 0 white and 1 black, the king first
+    final Piece.Type[][] pieces;
+
+    private Material(String white, String black) {
+        this.name = white + "v" + black;
+        this.pieces = new Piece.Type[][]{types(white), types(black)};
+    }
+
+    // parse a name like KQvK, the letters of a side may come in any order after its king
+    public static Material parse(String name) {
+        int separator = name.indexOf('v');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Material " + name + " needs a v between the sides");
+        }
+        return new Material(sort(name.substring(0, separator), name), sort(name.substring(separator + 1), name));
+    }
+
+    // material of a position with the white pieces as the first side
+    public static Material of(Position position) {
+        return new Material(side(position, 0), side(position, 1));
+    }
+
+    public int getPieceCount() {
+        return pieces[0].length + pieces[1].length;
+    }
+
+    // same material with the sides swapped
+    public Material swapped() {
+        int separator = name.indexOf('v');
+        return new Material(name.substring(separator + 1), name.substring(0, separator));
+    }
+
+    // the stronger side is first, by piece values and then by the letters
+    public boolean isCanonical() {
+        int separator = name.indexOf('v');
+        String white = name.substring(0, separator);
+        String black = name.substring(separator + 1);
+        int difference = value(white) - value(black);
+        if (difference != 0) {
+            return difference > 0;
+        }
+        return white.length() != black.length() ? white.length() > black.length() : white.compareTo(black) <= 0;
+    }
+
+    public Material canonical() {
+        return isCanonical() ? this : swapped();
+    }
+
+    // no side can ever be mated: bare kings or a single minor piece
+    public boolean isTriviallyDrawn() {
+        String letters = name.replace("K", "").replace("v", "");
+        return letters.isEmpty() || letters.equals("B") || letters.equals("N");
+    }
+
+    // canonical materials reachable by one capture or promotion, without the trivially drawn ones
+    public List<Material> successors() {
+        int separator = name.indexOf('v');
+        String[] sides = {name.substring(0, separator), name.substring(separator + 1)};
+        Set<String> result = new LinkedHashSet<>();
+        for (int side = 0; side < 2; side++) {
+            String own = sides[side];
+            for (int i = 1; i < own.length(); i++) {
+                String removed = own.substring(0, i) + own.substring(i + 1);
+                add(result, side == 0 ? removed : sides[0], side == 0 ? sides[1] : removed);
+                if (own.charAt(i) == 'P') {
+                    for (char promotion : "QRBN".toCharArray()) {
+                        String promoted = sort(own.substring(0, i) + promotion + own.substring(i + 1), name);
+                        add(result, side == 0 ? promoted : sides[0], side == 0 ? sides[1] : promoted);
+                    }
+                }
+            }
+        }
+        List<Material> materials = new ArrayList<>();
+        for (String successor : result) {
+            materials.add(parse(successor));
+        }
+        return materials;
+    }
+
+    private static void add(Set<String> result, String white, String black) {
+        Material material = new Material(white, black).canonical();
+        if (!material.isTriviallyDrawn()) {
+            result.add(material.name);
+        }
+    }
+
+    private static String side(Position position, int color) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < TYPES.length; i++) {
+            long bitboard = position.getBitboard(color * 6 + TYPES[i].ordinal() - 1);
+            for (int count = Long.bitCount(bitboard); count > 0; count--) {
+                builder.append(LETTERS.charAt(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String sort(String side, String name) {
+        char[] letters = side.toCharArray();
+        int kings = 0;
+        for (char letter : letters) {
+            if (LETTERS.indexOf(letter) < 0) {
+                throw new IllegalArgumentException("Material " + name + " has an unknown piece " + letter);
+            }
+            if (letter == 'K') {
+                kings++;
+            }
+        }
+        if (kings != 1) {
+            throw new IllegalArgumentException("Material " + name + " needs one king per side");
+        }
+        Character[] boxed = new Character[letters.length];
+        for (int i = 0; i < letters.length; i++) {
+            boxed[i] = letters[i];
+        }
+        Arrays.sort(boxed, (a, b) -> LETTERS.indexOf(a) - LETTERS.indexOf(b));
+        StringBuilder builder = new StringBuilder();
+        for (char letter : boxed) {
+            builder.append(letter);
+        }
+        return builder.toString();
+    }
+
+    private static Piece.Type[] types(String side) {
+        Piece.Type[] types = new Piece.Type[side.length()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = TYPES[LETTERS.indexOf(side.charAt(i))];
+        }
+        return types;
+    }
+
+    private static int value(String side) {
+        int value = 0;
+        for (int i = 0; i < side.length(); i++) {
+            value += VALUES[LETTERS.indexOf(side.charAt(i))];
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Material && ((Material) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return name;
+    }
+}
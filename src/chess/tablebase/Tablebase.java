@@ -0,0 +1,193 @@
+package chess.tablebase;
+
+import chess.bitboard.Bitboards;
+import chess.board.Position;
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// distance to mate of every position of one material, one byte per position in a buffer outside the heap
+// the index is the side to move followed by 6 bits per piece square in the order of the material, white pieces first,
+// so a probe is a few shifts and one read; squares of equal pieces are stored ascending, the other orders are invalid
+// a byte is 0 for a draw, 255 for an illegal position and otherwise the plies to mate plus one: an odd number of plies
+// means the side to move mates, an even number that it is mated, 0 plies that it is mated already
+// files are a 32 byte header (magic, version, entry count, reserved, material name) followed by the bytes, and are
+// read through a memory mapping
+public class Tablebase {
+    public static final int DRAW = 0;
+    public static final int INVALID = 255;
+    public static final int MAX_PLIES = 253;
+    public static final int MAX_PIECES = 4;
+    public static final String EXTENSION = ".tb";
+
+    static final int HEADER_BYTES = 32;
+    private static final int MAGIC = 0x43485442;
+    private static final int VERSION = 1;
+    private static final int NAME_BYTES = 16;
+
+    private final Material material;
+    private final ByteBuffer values;
+    private final int pieceCount;
+    // per piece slot: color index, piece index from Piece.index() and whether the slot before has the same piece
+    final int[] slotColors;
+    final int[] slotPieces;
+    final boolean[] sameAsPrevious;
+
+    Tablebase(Material material, ByteBuffer values) {
+        if (values.capacity() != size(material)) {
+            throw new IllegalArgumentException("Table " + material + " needs " + size(material) + " entries, has " + values.capacity());
+        }
+        this.material = material;
+        this.values = values;
+        this.pieceCount = material.getPieceCount();
+        this.slotColors = new int[pieceCount];
+        this.slotPieces = new int[pieceCount];
+        this.sameAsPrevious = new boolean[pieceCount];
+        int slot = 0;
+        for (int color = 0; color < 2; color++) {
+            for (Piece.Type type : material.pieces[color]) {
+                slotColors[slot] = color;
+                slotPieces[slot] = color * 6 + type.ordinal() - 1;
+                sameAsPrevious[slot] = slot > 0 && slotPieces[slot - 1] == slotPieces[slot];
+                slot++;
+            }
+        }
+    }
+
+    // entries of a table, two sides to move times 64 squares per piece
+    public static int size(Material material) {
+        int pieces = material.getPieceCount();
+        if (pieces > MAX_PIECES) {
+            throw new IllegalArgumentException("Tables have at most " + MAX_PIECES + " pieces, " + material + " has " + pieces);
+        }
+        return 2 << (6 * pieces);
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public int size() {
+        return values.capacity();
+    }
+
+    public int get(int index) {
+        return values.get(index) & 0xFF;
+    }
+
+    void set(int index, int value) {
+        values.put(index, (byte) value);
+    }
+
+    // true when the side to move mates, the position is lost for it or it is drawn
+    public static boolean isWin(int value) {
+        return value != INVALID && (value & 1) == 0 && value != DRAW;
+    }
+
+    public static boolean isLoss(int value) {
+        return value != INVALID && (value & 1) == 1;
+    }
+
+    // plies until mate for a won or lost position
+    public static int plies(int value) {
+        return value - 1;
+    }
+
+    // index of the position, swapped when the material of the table has the colors of the position exchanged, in which
+    // case the board is mirrored vertically; reversing the bytes of a bitboard mirrors it and keeps squares ascending
+    int index(Position position, boolean swapped) {
+        int turn = position.getTurn() == Piece.Color.WHITE ? 0 : 1;
+        int index = swapped ? turn ^ 1 : turn;
+        long bitboard = 0;
+        for (int slot = 0; slot < pieceCount; slot++) {
+            if (!sameAsPrevious[slot]) {
+                int piece = slotPieces[slot];
+                bitboard = position.getBitboard(swapped ? (piece + 6) % 12 : piece);
+                if (swapped) {
+                    bitboard = Long.reverseBytes(bitboard);
+                }
+            }
+            index = index << 6 | Bitboards.first(bitboard);
+            bitboard &= bitboard - 1;
+        }
+        return index;
+    }
+
+    // index of the squares by slot and the side to move, equal pieces are sorted in the scratch array
+    int index(int[] squares, int turn, int[] scratch) {
+        System.arraycopy(squares, 0, scratch, 0, pieceCount);
+        for (int slot = 1; slot < pieceCount; slot++) {
+            for (int i = slot; i > 0 && sameAsPrevious[i] && scratch[i - 1] > scratch[i]; i--) {
+                int square = scratch[i];
+                scratch[i] = scratch[i - 1];
+                scratch[i - 1] = square;
+            }
+        }
+        int index = turn;
+        for (int slot = 0; slot < pieceCount; slot++) {
+            index = index << 6 | scratch[slot];
+        }
+        return index;
+    }
+
+    // write the squares of the index by slot and return the side to move
+    int decode(int index, int[] squares) {
+        for (int slot = pieceCount - 1; slot >= 0; slot--) {
+            squares[slot] = index & 63;
+            index >>>= 6;
+        }
+        return index;
+    }
+
+    public void save(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).putInt(size()).putInt(0);
+        byte[] name = material.name.getBytes(StandardCharsets.US_ASCII);
+        header.put(name, 0, Math.min(name.length, NAME_BYTES));
+        header.clear();
+        ByteBuffer body = values.duplicate();
+        body.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+        }
+    }
+
+    // map a table file, the mapping stays valid after the channel is closed
+    public static Tablebase load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalArgumentException(path + " is not a tablebase file");
+            }
+            int size = header.getInt();
+            header.getInt();
+            byte[] name = new byte[NAME_BYTES];
+            header.get(name);
+            Material material = Material.parse(new String(name, StandardCharsets.US_ASCII).trim());
+            if (size != size(material) || channel.size() != HEADER_BYTES + (long) size) {
+                throw new IllegalArgumentException(path + " does not have the " + size(material) + " entries of " + material);
+            }
+            return new Tablebase(material, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, size));
+        }
+    }
+
+    // toString
+    @Override
+    public String toString() {
+        return material + " (" + size() + " entries)";
+    }
+}
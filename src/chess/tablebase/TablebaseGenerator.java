@@ -0,0 +1,416 @@
+package chess.tablebase;
+
+import chess.bitboard.BitboardMoves;
+import chess.bitboard.Bitboards;
+import chess.board.Position;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// builds distance to mate tables by retrograde analysis, tables of the materials reached by a capture or a promotion
+// are built first and added to the tablebases, the moves into them are looked up there
+// every pass splits the index range across a fork join pool, each thread works with its own position and buffers
+//
+// the first pass marks illegal positions, finds mates and stalemates and counts for every position its moves that stay
+// in the table; moves into other tables are resolved at once: a move to a lost position makes a pending win, a move to
+// a won one is remembered as the longest way to lose and a draw keeps the position from ever being lost
+// then level n resolves the positions with a pending result of n plies and walks back from all positions just resolved:
+// the predecessors of a loss in n are wins in n + 1, the predecessors of a win in n lose one way out and are lost once
+// none is left; predecessors are found by moving the pieces of the side that just moved backwards, un-captures and
+// un-promotions are not needed because those moves cross into other tables
+// en passant is not generated inside a table
+public class TablebaseGenerator {
+    // entries of the index range a task handles without splitting
+    private static final int CHUNK = 1 << 14;
+    // the remaining moves of a position in the low 16 bits and the plies of the longest loss into another table plus
+    // one above them
+    private static final VarHandle COUNTERS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final int COUNT_MASK = 0xFFFF;
+    private static final int LONGEST_SHIFT = 16;
+    private static final Piece.Type[] TYPES = Piece.Type.values();
+
+    private final Tablebases tablebases;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    public TablebaseGenerator(Tablebases tablebases, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1, was " + threads);
+        }
+        this.tablebases = tablebases;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public Tablebases getTablebases() {
+        return tablebases;
+    }
+
+    // the table of the material, built with all missing tables it depends on unless it is already known
+    public Tablebase generate(Material material) {
+        material = material.canonical();
+        Tablebase known = tablebases.get(material);
+        if (known != null) {
+            return known;
+        }
+        for (Material successor : material.successors()) {
+            generate(successor);
+        }
+
+        int size = Tablebase.size(material);
+        Tablebase table = new Tablebase(material, ByteBuffer.allocateDirect(size));
+        Build build = new Build(table, ByteBuffer.allocateDirect(size), ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()));
+        run(build, (worker, start, end) -> initialize(build, worker, start, end));
+        for (int level = 0; ; level++) {
+            if (level > Tablebase.MAX_PLIES) {
+                throw new IllegalStateException("Mates of " + material + " are longer than " + Tablebase.MAX_PLIES + " plies");
+            }
+            int n = level;
+            long result = run(build, (worker, start, end) -> resolve(build, n, start, end));
+            long resolved = result >>> 32;
+            long waiting = result & 0xFFFFFFFFL;
+            if (resolved == 0 && waiting == 0) {
+                break;
+            }
+            if (resolved > 0) {
+                run(build, (worker, start, end) -> retract(build, worker, n, start, end));
+            }
+        }
+        tablebases.add(table);
+        return table;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // run the work on all chunks of the table and sum up what it returns
+    private long run(Build build, Work work) {
+        return pool.invoke(new RangeTask(work, 0, build.table.size()));
+    }
+
+    // mark illegal positions and count the moves of the others, see the class comment
+    private long initialize(Build build, Worker worker, int start, int end) {
+        Tablebase table = build.table;
+        int[] squares = worker.squares;
+        int[] moves = worker.moves;
+        for (int index = start; index < end; index++) {
+            int turn = table.decode(index, squares);
+            if (!worker.setUp(table, squares, turn)) {
+                table.set(index, Tablebase.INVALID);
+                continue;
+            }
+            Position position = worker.position;
+            int count = BitboardMoves.generate(position, moves);
+            if (count == 0) {
+                // mated positions are lost in 0 plies, stalemates stay draws
+                if (BitboardMoves.isCheck(position, position.getTurn())) {
+                    build.pending.put(index, (byte) 1);
+                }
+                continue;
+            }
+
+            int remaining = 0;
+            int win = 0;
+            int longestLoss = 0;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (!Move.hasFlags(move, Move.CAPTURE | Move.PROMOTION)) {
+                    remaining++;
+                    continue;
+                }
+                position.makeMove(move);
+                int value = tablebases.probe(position);
+                position.unmakeMove(move);
+                if (value == Tablebases.NONE || value == Tablebase.INVALID) {
+                    throw new IllegalStateException("No table value after " + Move.toUci(move) + " in " + position.getFen());
+                }
+                if (Tablebase.isLoss(value)) {
+                    int plies = Tablebase.plies(value) + 1;
+                    win = win == 0 ? plies : Math.min(win, plies);
+                    remaining++;
+                } else if (Tablebase.isWin(value)) {
+                    longestLoss = Math.max(longestLoss, Tablebase.plies(value) + 1);
+                } else {
+                    remaining++;
+                }
+            }
+            if (win > 0) {
+                build.pending.put(index, (byte) (win + 1));
+            } else if (remaining == 0) {
+                build.pending.put(index, (byte) (longestLoss + 1));
+            }
+            build.counters.putInt(index * 4, remaining | (longestLoss + 1) << LONGEST_SHIFT);
+        }
+        return 0;
+    }
+
+    // resolve the positions with a pending result of n plies, returns the number resolved in the high half and the
+    // number still pending for later levels in the low half
+    private long resolve(Build build, int n, int start, int end) {
+        Tablebase table = build.table;
+        long resolved = 0;
+        long waiting = 0;
+        for (int index = start; index < end; index++) {
+            int pending = build.pending.get(index) & 0xFF;
+            if (pending == 0 || table.get(index) != Tablebase.DRAW) {
+                continue;
+            }
+            if (pending == n + 1) {
+                table.set(index, pending);
+                resolved++;
+            } else if (pending > n + 1) {
+                waiting++;
+            }
+        }
+        return resolved << 32 | waiting;
+    }
+
+    // walk back from the positions resolved in n plies to the positions one move before
+    private long retract(Build build, Worker worker, int n, int start, int end) {
+        Tablebase table = build.table;
+        int[] squares = worker.squares;
+        int pieceCount = table.getMaterial().getPieceCount();
+        for (int index = start; index < end; index++) {
+            if (table.get(index) != n + 1) {
+                continue;
+            }
+            int turn = table.decode(index, squares);
+            // the side that just moved is the one not to move
+            int mover = turn ^ 1;
+            long occupancy = 0;
+            for (int slot = 0; slot < pieceCount; slot++) {
+                occupancy |= 1L << squares[slot];
+            }
+            for (int slot = 0; slot < pieceCount; slot++) {
+                if (table.slotColors[slot] != mover) {
+                    continue;
+                }
+                int to = squares[slot];
+                long origins = origins(table.slotPieces[slot] % 6, mover, to, occupancy);
+                while (origins != 0) {
+                    squares[slot] = Bitboards.first(origins);
+                    origins &= origins - 1;
+                    int previous = table.index(squares, mover, worker.scratch);
+                    if (table.get(previous) == Tablebase.DRAW) {
+                        update(build, previous, n);
+                    }
+                }
+                squares[slot] = to;
+            }
+        }
+        return 0;
+    }
+
+    // the predecessor moves into a position resolved in n plies
+    private static void update(Build build, int previous, int n) {
+        if ((n & 1) == 0) {
+            // a move to a position lost in n plies wins in n + 1, every thread writes the same value
+            int pending = build.pending.get(previous) & 0xFF;
+            if (pending == 0 || pending > n + 2) {
+                build.pending.put(previous, (byte) (n + 2));
+            }
+        } else {
+            // one move less that does not lose, when none is left the position loses after the longest way out
+            int old = (int) COUNTERS.getAndAdd(build.counters, previous * 4, -1);
+            if ((old & COUNT_MASK) == 1) {
+                int plies = Math.max(n + 1, (old >>> LONGEST_SHIFT) - 1);
+                if (plies > Tablebase.MAX_PLIES) {
+                    throw new IllegalStateException("Mates are longer than " + Tablebase.MAX_PLIES + " plies");
+                }
+                build.pending.put(previous, (byte) (plies + 1));
+            }
+        }
+    }
+
+    // squares a piece of the type offset and color could have come from to the square with a move that is not a capture
+    private static long origins(int type, int color, int to, long occupancy) {
+        switch (type) {
+            case 0: {
+                // pawns step back towards their home row, two squares from the fourth rank
+                int back = color == 0 ? 8 : -8;
+                int from = to + back;
+                if (from < 8 || from >= 56 || (occupancy & 1L << from) != 0) {
+                    return 0;
+                }
+                long origins = 1L << from;
+                int doubleRow = color == 0 ? 4 : 3;
+                if (to >>> 3 == doubleRow && (occupancy & 1L << (from + back)) == 0) {
+                    origins |= 1L << (from + back);
+                }
+                return origins;
+            }
+            case 1:
+                return Bitboards.KNIGHT_ATTACKS[to] & ~occupancy;
+            case 2:
+                return Bitboards.bishopAttacks(to, occupancy) & ~occupancy;
+            case 3:
+                return Bitboards.rookAttacks(to, occupancy) & ~occupancy;
+            case 4:
+                return Bitboards.queenAttacks(to, occupancy) & ~occupancy;
+            default:
+                return Bitboards.KING_ATTACKS[to] & ~occupancy;
+        }
+    }
+
+    // the table being built with its pending results and move counters, both only needed while building
+    private static final class Build {
+        final Tablebase table;
+        final ByteBuffer pending;
+        final ByteBuffer counters;
+
+        Build(Tablebase table, ByteBuffer pending, ByteBuffer counters) {
+            this.table = table;
+            this.pending = pending;
+            this.counters = counters;
+        }
+    }
+
+    private interface Work {
+        long run(Worker worker, int start, int end);
+    }
+
+    private final class RangeTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Work work;
+        private final int start;
+        private final int end;
+
+        RangeTask(Work work, int start, int end) {
+            this.work = work;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Long compute() {
+            if (end - start <= CHUNK) {
+                return work.run(workers.get(), start, end);
+            }
+            int middle = (start + end) >>> 1;
+            RangeTask left = new RangeTask(work, start, middle);
+            left.fork();
+            long right = new RangeTask(work, middle, end).compute();
+            return left.join() + right;
+        }
+    }
+
+    // position and buffers of one thread, the pieces of the last set up position are moved instead of clearing it
+    private static final class Worker {
+        final Position position = new Position(8);
+        final int[] moves = new int[Move.MAX_MOVES];
+        final int[] squares = new int[Tablebase.MAX_PIECES];
+        final int[] scratch = new int[Tablebase.MAX_PIECES];
+        private final int[] placed = new int[Tablebase.MAX_PIECES];
+        private int placedCount;
+
+        // place the pieces of the squares, false when the position is illegal, a duplicate of one with the equal pieces
+        // in order, or has the side not to move in check
+        boolean setUp(Tablebase table, int[] squares, int turn) {
+            int pieceCount = table.getMaterial().getPieceCount();
+            long occupancy = 0;
+            for (int slot = 0; slot < pieceCount; slot++) {
+                long bit = 1L << squares[slot];
+                if ((occupancy & bit) != 0 || table.sameAsPrevious[slot] && squares[slot - 1] > squares[slot]) {
+                    return false;
+                }
+                if (table.slotPieces[slot] % 6 == 0 && (bit & (Bitboards.ROW_0 | Bitboards.ROW_7)) != 0) {
+                    return false;
+                }
+                occupancy |= bit;
+            }
+
+            for (int i = 0; i < placedCount; i++) {
+                position.setPiece(Piece.NONE, placed[i] & 7, placed[i] >>> 3);
+            }
+            for (int slot = 0; slot < pieceCount; slot++) {
+                int piece = table.slotPieces[slot];
+                Piece.Color color = piece < 6 ? Piece.Color.WHITE : Piece.Color.BLACK;
+                position.setPiece(Piece.of(color, TYPES[piece % 6 + 1]), squares[slot] & 7, squares[slot] >>> 3);
+                placed[slot] = squares[slot];
+            }
+            placedCount = pieceCount;
+            Piece.Color color = turn == 0 ? Piece.Color.WHITE : Piece.Color.BLACK;
+            if (position.getTurn() != color) {
+                position.setTurn(color);
+            }
+            return !BitboardMoves.isCheck(position, turn == 0 ? Piece.Color.BLACK : Piece.Color.WHITE);
+        }
+    }
+
+    // usage: TablebaseGenerator <directory> <material>... [--threads n]
+    // tables already in the directory are loaded, the missing ones are built and written there
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.size() < 2) {
+            System.out.println("usage: TablebaseGenerator <directory> <material>... [--threads n]");
+            return;
+        }
+
+        Path directory = Paths.get(names.get(0));
+        Tablebases tablebases = Files.isDirectory(directory) ? Tablebases.load(directory) : new Tablebases();
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(tablebases, threads);
+        try {
+            for (String name : names.subList(1, names.size())) {
+                List<Tablebase> before = tablebases.getTables();
+                long start = System.nanoTime();
+                generator.generate(Material.parse(name));
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                for (Tablebase table : tablebases.getTables()) {
+                    if (!before.contains(table)) {
+                        table.save(directory.resolve(table.getMaterial() + Tablebase.EXTENSION));
+                        System.out.println(summary(table));
+                    }
+                }
+                System.out.println(name + " done in " + millis + " ms");
+            }
+        } finally {
+            generator.shutdown();
+        }
+    }
+
+    // counts of the legal positions by result and the longest mate
+    private static String summary(Tablebase table) {
+        long wins = 0;
+        long losses = 0;
+        long draws = 0;
+        int longest = 0;
+        for (int index = 0; index < table.size(); index++) {
+            int value = table.get(index);
+            if (value == Tablebase.INVALID) {
+                continue;
+            }
+            if (Tablebase.isWin(value)) {
+                wins++;
+                longest = Math.max(longest, Tablebase.plies(value));
+            } else if (Tablebase.isLoss(value)) {
+                losses++;
+            } else {
+                draws++;
+            }
+        }
+        return table.getMaterial() + ": " + (wins + losses + draws) + " positions, " + wins + " wins, " + losses + " losses, "
+                + draws + " draws, longest mate " + longest + " plies";
+    }
+}
@@ -0,0 +1,219 @@
+package chess.tablebase;
+
+import chess.bitboard.BitboardMoves;
+import chess.bitboard.Bitboards;
+import chess.board.Position;
+import chess.piece.Move;
+import chess.piece.Piece;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// the tables of all known materials, probed by the material of a position
+// positions are looked up by a key of their piece counts in a small open addressing table, so a probe does not
+// allocate; a position whose colors are exchanged against the stored table is probed mirrored
+// positions with castling rights, a possible en passant capture or more pieces than any table are not covered,
+// the fifty move rule is not taken into account
+// tables may be added while other threads probe
+public class Tablebases {
+    public static final int NONE = -1;
+
+    private static final int SLOTS = 256;
+
+    private volatile Lookup lookup = new Lookup();
+    private final List<Tablebase> tables = new ArrayList<>();
+
+    // load every table file of the directory
+    public static Tablebases load(Path directory) throws IOException {
+        Tablebases tablebases = new Tablebases();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Tablebase.EXTENSION)) {
+            for (Path file : files) {
+                tablebases.add(Tablebase.load(file));
+            }
+        }
+        return tablebases;
+    }
+
+    // write every table to the directory as <material>.tb
+    public void save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Tablebase table : getTables()) {
+            table.save(directory.resolve(table.getMaterial() + Tablebase.EXTENSION));
+        }
+    }
+
+    // add a table, replacing a table of the same material
+    public synchronized void add(Tablebase table) {
+        Material material = table.getMaterial();
+        if (!material.isCanonical()) {
+            throw new IllegalArgumentException("Table " + material + " is stored for " + material.canonical());
+        }
+        tables.removeIf(other -> other.getMaterial().equals(material));
+        tables.add(table);
+
+        Lookup next = new Lookup();
+        for (Tablebase other : tables) {
+            next.put(key(other.getMaterial().swapped()), other, true);
+            next.put(key(other.getMaterial()), other, false);
+            next.maxPieces = Math.max(next.maxPieces, other.getMaterial().getPieceCount());
+        }
+        lookup = next;
+    }
+
+    // the table of the material in either color order, null when there is none
+    public Tablebase get(Material material) {
+        int slot = lookup.find(key(material));
+        return slot < 0 ? null : lookup.tables[slot];
+    }
+
+    public synchronized List<Tablebase> getTables() {
+        return new ArrayList<>(tables);
+    }
+
+    // most pieces of any table, positions with more are never found
+    public int getMaxPieces() {
+        return lookup.maxPieces;
+    }
+
+    // the table value of the position for the side to move, see Tablebase, or NONE when it is not covered
+    // positions without mating material are draws even without a table
+    public int probe(Position position) {
+        if (!position.hasBitboards() || position.getCastlingRights() != 0) {
+            return NONE;
+        }
+        Lookup lookup = this.lookup;
+        if (Long.bitCount(position.getOccupancy()) > Math.max(lookup.maxPieces, 3)) {
+            return NONE;
+        }
+        if (position.isInsufficientMaterial()) {
+            return Tablebase.DRAW;
+        }
+        if (canCaptureEnPassant(position)) {
+            return NONE;
+        }
+        int slot = lookup.find(key(position));
+        if (slot < 0) {
+            return NONE;
+        }
+        Tablebase table = lookup.tables[slot];
+        return table.get(table.index(position, lookup.swapped[slot]));
+    }
+
+    // win, draw or loss for the side to move, null when the position is not covered
+    public Wdl probeWdl(Position position) {
+        int value = probe(position);
+        if (value == NONE || value == Tablebase.INVALID) {
+            return null;
+        }
+        return Tablebase.isWin(value) ? Wdl.WIN : Tablebase.isLoss(value) ? Wdl.LOSS : Wdl.DRAW;
+    }
+
+    // the move of perfect play: the fastest mate when winning, the longest resistance when losing and any move that
+    // keeps the draw otherwise; Move.NONE when the position is not covered or has no legal move
+    public int bestMove(Position position) {
+        int value = probe(position);
+        if (value == NONE || value == Tablebase.INVALID) {
+            return Move.NONE;
+        }
+        int[] moves = new int[Move.MAX_MOVES];
+        int count = BitboardMoves.generate(position, moves);
+        int best = Move.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            int child = probe(position);
+            position.unmakeMove(moves[i]);
+            if (child == NONE || child == Tablebase.INVALID) {
+                continue;
+            }
+            int rank = rank(child);
+            if (rank > bestRank) {
+                best = moves[i];
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    // order of a child value for the side that moved into it: the child side losing faster is best, a draw is next,
+    // and the child side winning later is better than winning sooner
+    private static int rank(int child) {
+        if (Tablebase.isLoss(child)) {
+            return 1000 - Tablebase.plies(child);
+        }
+        if (Tablebase.isWin(child)) {
+            return -1000 + Tablebase.plies(child);
+        }
+        return 0;
+    }
+
+    // true when a pawn of the side to move may take en passant, which the tables do not cover
+    private static boolean canCaptureEnPassant(Position position) {
+        if (position.getEnPassantX() < 0) {
+            return false;
+        }
+        int us = position.getTurn() == Piece.Color.WHITE ? 0 : 1;
+        int square = position.getEnPassantY() * 8 + position.getEnPassantX();
+        return (Bitboards.PAWN_ATTACKS[us ^ 1][square] & position.getBitboard(us * 6)) != 0;
+    }
+
+    // piece counts of the material, 2 bits for each piece index but the kings
+    private static int key(Material material) {
+        int key = 0;
+        for (int color = 0; color < 2; color++) {
+            for (Piece.Type type : material.pieces[color]) {
+                if (type != Piece.Type.KING) {
+                    key += 1 << (2 * (color * 6 + type.ordinal() - 1));
+                }
+            }
+        }
+        return key;
+    }
+
+    private static int key(Position position) {
+        int key = 0;
+        for (int piece = 0; piece < 12; piece++) {
+            if (piece % 6 != 5) {
+                key += Long.bitCount(position.getBitboard(piece)) << (2 * piece);
+            }
+        }
+        return key;
+    }
+
+    // immutable once published, replaced as a whole when a table is added
+    private static final class Lookup {
+        final int[] keys = new int[SLOTS];
+        final Tablebase[] tables = new Tablebase[SLOTS];
+        final boolean[] swapped = new boolean[SLOTS];
+        int maxPieces;
+
+        // the unswapped entry is put last, so a material equal to its swap is probed without mirroring
+        void put(int key, Tablebase table, boolean swap) {
+            int slot = slot(key);
+            while (tables[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & (SLOTS - 1);
+            }
+            keys[slot] = key;
+            tables[slot] = table;
+            swapped[slot] = swap;
+        }
+
+        int find(int key) {
+            for (int slot = slot(key); tables[slot] != null; slot = (slot + 1) & (SLOTS - 1)) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        // keys of few pieces differ only in a few bits, so they are spread by a multiplication
+        private static int slot(int key) {
+            return (key * 0x9E3779B1) >>> 24;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package chess.tablebase;
+
+// game theoretic result of a tablebase position for the side to move
+public enum Wdl {
+    WIN,
+    DRAW,
+    LOSS
+}
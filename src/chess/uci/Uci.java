@@ -0,0 +1,440 @@
+package chess.uci;
+
+import chess.bitboard.BitboardMoves;
+import chess.book.PolyglotBook;
+import chess.board.Fen;
+import chess.board.Position;
+import chess.engine.Engine;
+import chess.engine.SearchLimits;
+import chess.engine.SearchListener;
+import chess.engine.SearchResult;
+import chess.engine.nnue.Network;
+import chess.piece.Move;
+import chess.piece.Piece;
+import chess.tablebase.Tablebases;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// headless UCI front-end for GUIs and match runners
+// commands are read on the calling thread while searches run on the engine thread, so stop and isready are answered
+// at once during a search; info and bestmove lines are written by the engine thread through the synchronized send
+public class Uci implements SearchListener {
+    public static final String NAME = "Chess";
+    public static final String AUTHOR = "the Chess authors";
+
+    private static final int MAX_THREADS = 256;
+    private static final int MAX_HASH_MB = 65536;
+    // time kept back for the communication with the GUI
+    private static final long MOVE_OVERHEAD_MS = 30;
+    // moves the remaining time is split over when the GUI does not send movestogo
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+    private final Engine engine = new Engine();
+    private final Position position = new Position(8);
+    private final Random random = new Random();
+    // opening book played from when OwnBook is on, null when none is loaded
+    private PolyglotBook book;
+    private boolean ownBook;
+
+    // search started by the last go command, null before the first
+    private Future<SearchResult> searching;
+    // go infinite only sends its bestmove after stop, a search that ends by itself before is held back until then
+    private boolean infinite;
+    private boolean stopRequested;
+    private SearchResult held;
+
+    public Uci(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+        position.loadFen(Fen.START);
+    }
+
+    public static void main(String[] args) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        PrintStream out = new PrintStream(System.out, false, "US-ASCII");
+        new Uci(in, out).run();
+    }
+
+    // read commands until quit or the end of the input
+    public void run() throws IOException {
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!execute(line.trim())) {
+                    break;
+                }
+            }
+        } finally {
+            stopAndWait();
+            engine.shutdown();
+            if (book != null) {
+                book.close();
+            }
+        }
+    }
+
+    // handle one command line, false for quit
+    public boolean execute(String line) {
+        if (line.isEmpty()) {
+            return true;
+        }
+        String[] tokens = line.split("\\s+");
+        try {
+            switch (tokens[0]) {
+                case "uci":
+                    send("id name " + NAME);
+                    send("id author " + AUTHOR);
+                    send("option name Hash type spin default " + Engine.DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+                    send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                    send("option name EvalFile type string default <empty>");
+                    send("option name Clear Hash type button");
+                    send("option name OwnBook type check default false");
+                    send("option name BookFile type string default <empty>");
+                    send("option name TablebasePath type string default <empty>");
+                    send("uciok");
+                    break;
+                case "isready":
+                    send("readyok");
+                    break;
+                case "ucinewgame":
+                    stopAndWait();
+                    engine.clearHash();
+                    position.loadFen(Fen.START);
+                    break;
+                case "setoption":
+                    stopAndWait();
+                    setOption(line);
+                    break;
+                case "position":
+                    stopAndWait();
+                    setPosition(tokens);
+                    break;
+                case "go":
+                    go(tokens);
+                    break;
+                case "stop":
+                    stop();
+                    break;
+                case "ponderhit":
+                case "debug":
+                case "register":
+                    // pondering is not offered and there is nothing to register
+                    break;
+                case "quit":
+                    return false;
+                default:
+                    send("info string unknown command " + tokens[0]);
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+        }
+        return true;
+    }
+
+    public synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+
+    // setoption name <id> [value <x>], the name may contain spaces
+    private void setOption(String line) {
+        int nameIndex = line.indexOf(" name ");
+        if (nameIndex < 0) {
+            throw new IllegalArgumentException("setoption without name");
+        }
+        int valueIndex = line.indexOf(" value ", nameIndex);
+        String name = (valueIndex < 0 ? line.substring(nameIndex + 6) : line.substring(nameIndex + 6, valueIndex)).trim();
+        String value = valueIndex < 0 ? "" : line.substring(valueIndex + 7).trim();
+
+        switch (name.toLowerCase()) {
+            case "hash":
+                engine.setHashSize(clamp(parseInt(name, value), 1, MAX_HASH_MB));
+                break;
+            case "threads":
+                engine.setThreads(clamp(parseInt(name, value), 1, MAX_THREADS));
+                break;
+            case "evalfile":
+                if (value.isEmpty() || value.equals("<empty>")) {
+                    engine.setNetwork(null);
+                } else {
+                    try {
+                        Network network = Network.load(Paths.get(value));
+                        engine.setNetwork(network);
+                        send("info string loaded network " + network);
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Cannot read network " + value + ": " + e.getMessage());
+                    }
+                }
+                break;
+            case "clear hash":
+                engine.clearHash();
+                break;
+            case "ownbook":
+                ownBook = value.equalsIgnoreCase("true");
+                break;
+            case "bookfile":
+                setBook(value);
+                break;
+            case "tablebasepath":
+                setTablebases(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + name);
+        }
+    }
+
+    private void setBook(String path) {
+        try {
+            if (book != null) {
+                book.close();
+                book = null;
+            }
+            if (!path.isEmpty() && !path.equals("<empty>")) {
+                book = PolyglotBook.open(Paths.get(path));
+                send("info string loaded book " + path + " with " + book.size() + " entries");
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Cannot open book " + path + ": " + e.getMessage());
+        }
+    }
+
+    // directory of .tb files written by TablebaseGenerator
+    private void setTablebases(String path) {
+        if (path.isEmpty() || path.equals("<empty>")) {
+            engine.setTablebases(null);
+            return;
+        }
+        try {
+            Tablebases tablebases = Tablebases.load(Paths.get(path));
+            engine.setTablebases(tablebases);
+            send("info string loaded " + tablebases.getTables().size() + " tablebases from " + path);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read tablebases " + path + ": " + e.getMessage());
+        }
+    }
+
+    // position (startpos | fen <fen>) [moves <move>...]
+    private void setPosition(String[] tokens) {
+        int index = 1;
+        if (index < tokens.length && tokens[index].equals("startpos")) {
+            position.loadFen(Fen.START);
+            index++;
+        } else if (index < tokens.length && tokens[index].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (index++; index < tokens.length && !tokens[index].equals("moves"); index++) {
+                fen.append(tokens[index]).append(' ');
+            }
+            try {
+                position.loadFen(fen.toString().trim());
+            } catch (IllegalArgumentException e) {
+                // an invalid position leaves the board empty, the start position is the safer state to search
+                position.loadFen(Fen.START);
+                throw e;
+            }
+        } else {
+            throw new IllegalArgumentException("position needs startpos or fen");
+        }
+
+        if (index < tokens.length && tokens[index].equals("moves")) {
+            int[] moves = new int[Move.MAX_MOVES];
+            for (index++; index < tokens.length; index++) {
+                int move = findMove(moves, tokens[index]);
+                if (move == Move.NONE) {
+                    throw new IllegalArgumentException("Illegal move " + tokens[index] + " in " + position.getFen());
+                }
+                position.makeMove(move);
+            }
+        }
+    }
+
+    // the legal move with the coordinate notation, Move.NONE when there is none
+    private int findMove(int[] moves, String uci) {
+        int count = BitboardMoves.generate(position, moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.toUci(moves[i]).equals(uci)) {
+                return moves[i];
+            }
+        }
+        return Move.NONE;
+    }
+
+    // go [depth n] [nodes n] [movetime ms] [wtime ms] [btime ms] [winc ms] [binc ms] [movestogo n] [infinite]
+    private void go(String[] tokens) {
+        stopAndWait();
+        SearchLimits limits = SearchLimits.infinite();
+        boolean white = position.getTurn() == Piece.Color.WHITE;
+        long time = -1;
+        long increment = 0;
+        int movesToGo = DEFAULT_MOVES_TO_GO;
+        boolean goInfinite = false;
+
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "depth":
+                    limits.setDepth(parseInt(tokens[i], value(tokens, ++i)));
+                    break;
+                case "nodes":
+                    limits.setNodes(parseLong(tokens[i], value(tokens, ++i)));
+                    break;
+                case "movetime":
+                    limits.setTimeMillis(Math.max(1, parseLong(tokens[i], value(tokens, ++i)) - MOVE_OVERHEAD_MS));
+                    break;
+                case "wtime":
+                case "btime":
+                    long remaining = parseLong(tokens[i], value(tokens, ++i));
+                    if (tokens[i - 1].charAt(0) == (white ? 'w' : 'b')) {
+                        time = remaining;
+                    }
+                    break;
+                case "winc":
+                case "binc":
+                    long inc = parseLong(tokens[i], value(tokens, ++i));
+                    if (tokens[i - 1].charAt(0) == (white ? 'w' : 'b')) {
+                        increment = inc;
+                    }
+                    break;
+                case "movestogo":
+                    movesToGo = Math.max(1, parseInt(tokens[i], value(tokens, ++i)));
+                    break;
+                case "infinite":
+                    goInfinite = true;
+                    break;
+                default:
+                    // searchmoves, ponder and mate are not supported, their values are skipped as unknown tokens
+                    break;
+            }
+        }
+        if (time >= 0 && !goInfinite) {
+            limits.setTimeMillis(allocateTime(time, increment, movesToGo));
+        }
+
+        // a book move is answered at once, except while analysing
+        if (ownBook && book != null && !goInfinite) {
+            int move = book.weightedMove(position, random);
+            if (move != Move.NONE) {
+                send("info string book move");
+                send("bestmove " + Move.toUci(move));
+                return;
+            }
+        }
+
+        synchronized (this) {
+            infinite = goInfinite;
+            stopRequested = false;
+            held = null;
+        }
+        searching = engine.start(position, limits, this);
+    }
+
+    // share of the remaining time for this move, never more than what is left after the overhead
+    static long allocateTime(long remaining, long increment, int movesToGo) {
+        long available = Math.max(1, remaining - MOVE_OVERHEAD_MS);
+        long share = remaining / movesToGo + increment * 3 / 4;
+        return Math.max(1, Math.min(share, available));
+    }
+
+    private void stop() {
+        SearchResult result;
+        synchronized (this) {
+            stopRequested = true;
+            result = held;
+            held = null;
+        }
+        engine.stop();
+        if (result != null) {
+            sendBestMove(result);
+        }
+    }
+
+    // stop a running search and wait for its bestmove, so the next command does not race with it
+    private void stopAndWait() {
+        Future<SearchResult> future = searching;
+        if (future == null) {
+            return;
+        }
+        stop();
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            send("info string search failed: " + e.getCause());
+        }
+        searching = null;
+    }
+
+    @Override
+    public void onIteration(SearchResult result) {
+        StringBuilder line = new StringBuilder("info depth ").append(result.depth);
+        if (result.isMate()) {
+            line.append(" score mate ").append(result.mateIn());
+        } else {
+            line.append(" score cp ").append(result.score);
+        }
+        line.append(" nodes ").append(result.nodes)
+                .append(" nps ").append(result.nodesPerSecond())
+                .append(" time ").append(result.nanos / 1_000_000)
+                .append(" hashfull ").append(engine.getTranspositionTable().getPermilleFull())
+                .append(" pv ").append(result.getPv());
+        send(line.toString());
+    }
+
+    @Override
+    public void onFinished(SearchResult result) {
+        synchronized (this) {
+            if (infinite && !stopRequested) {
+                held = result;
+                return;
+            }
+        }
+        sendBestMove(result);
+    }
+
+    private void sendBestMove(SearchResult result) {
+        if (result.bestMove == Move.NONE) {
+            send("bestmove 0000");
+        } else if (result.pv.length > 1) {
+            send("bestmove " + Move.toUci(result.bestMove) + " ponder " + Move.toUci(result.pv[1]));
+        } else {
+            send("bestmove " + Move.toUci(result.bestMove));
+        }
+    }
+
+    private static String value(String[] tokens, int index) {
+        if (index >= tokens.length) {
+            throw new IllegalArgumentException(tokens[index - 1] + " needs a value");
+        }
+        return tokens[index];
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " needs a number, was " + value);
+        }
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " needs a number, was " + value);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,39 @@
+package chess.board;
+
+import chess.piece.Piece;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FenTest {
+    @Test
+    void roundTrip() {
+        Position position = new Position(8);
+        String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+        position.loadFen(fen);
+        assertEquals(fen, position.getFen());
+    }
+
+    @Test
+    void rejectsMissingKings() {
+        assertInvalid("8/8/8/8/8/8/8/8 w - - 0 1");
+        assertInvalid("4k3/8/8/8/8/8/8/8 w - - 0 1");
+        assertInvalid("8/8/8/8/8/8/8/4K3 b - - 0 1");
+    }
+
+    @Test
+    void rejectsSideNotToMoveInCheck() {
+        assertInvalid("4k2Q/8/8/8/8/8/8/4K3 w - - 0 1");
+        Position position = new Position(8);
+        position.loadFen("4k2Q/8/8/8/8/8/8/4K3 b - - 0 1");
+        assertEquals(GameStatus.ONGOING, position.getStatus());
+    }
+
+    // a rejected fen leaves the position cleared
+    private static void assertInvalid(String fen) {
+        Position position = new Position(8);
+        assertThrows(IllegalArgumentException.class, () -> position.loadFen(fen));
+        assertEquals(-1, position.getKingX(Piece.Color.WHITE));
+    }
+}
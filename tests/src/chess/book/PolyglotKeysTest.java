@@ -0,0 +1,54 @@
+package chess.book;
+
+import chess.board.Fen;
+import chess.board.Position;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PolyglotKeysTest {
+    // positions and keys published with the Polyglot format description
+    private static final String[][] KEYS = {
+            {Fen.START, "463b96181691fc9c"},
+            {"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", "823c9b50fd114196"},
+            {"rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2", "0756b94461c50fb0"},
+            {"rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2", "662fafb965db29d4"},
+            {"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3", "22a48b5a8e47ff78"},
+            {"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3", "652a607ca3f242c1"},
+            {"rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4", "00fdd303c946bdd9"},
+            {"rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3", "3c8123ea7b067637"},
+            {"rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4", "5c3f9b829b279560"},
+    };
+
+    @Test
+    void standardTableGivesPublishedKeys() throws IOException {
+        PolyglotKeys keys = PolyglotKeys.standard();
+        for (String[] entry : KEYS) {
+            Position position = new Position(8);
+            position.loadFen(entry[0]);
+            assertEquals(Long.parseUnsignedLong(entry[1], 16), keys.key(position), entry[0]);
+        }
+    }
+
+    @Test
+    void startKeyConstant() throws IOException {
+        Position position = new Position(8);
+        position.loadFen(Fen.START);
+        assertEquals(0x463b96181691fc9cL, PolyglotKeys.standard().key(position));
+        assertEquals(0x463b96181691fc9cL, PolyglotKeys.START_KEY);
+    }
+
+    @Test
+    void rejectsWrongTable() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < PolyglotKeys.RANDOM_COUNT; i++) {
+            text.append(String.format("0x%016X%n", i * 0x9E3779B97F4A7C15L));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> PolyglotKeys.load(new ByteArrayInputStream(text.toString().getBytes()), "wrong"));
+    }
+}
@@ -0,0 +1,79 @@
+package chess.pgn;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PgnReplayTest {
+    private static final String GAME = "[Event \"test\"]\n\n1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 1/2-1/2\n\n";
+
+    @Test
+    void replaysEveryGame() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (PgnReader reader = new PgnReader(games(400, false))) {
+                PgnReplayResult result = new PgnReplay(4).replay(reader, null);
+                assertEquals(400, result.games);
+                assertEquals(400 * 6, result.moves);
+            }
+        });
+    }
+
+    // a handler failing while the other threads wait for the slow reader used to leave them waiting forever
+    @Test
+    void handlerFailureStopsIdleWorkers() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            AtomicInteger handled = new AtomicInteger();
+            try (PgnReader reader = new PgnReader(games(400, true))) {
+                IllegalStateException e = assertThrows(IllegalStateException.class,
+                        () -> new PgnReplay(4).replay(reader, (game, position) -> {
+                            if (handled.incrementAndGet() == 1) {
+                                throw new IllegalArgumentException("handler failed");
+                            }
+                        }));
+                assertEquals("handler failed", e.getCause().getMessage());
+            }
+        });
+    }
+
+    @Test
+    void handlerFailureWithSmallQueue() {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            try (PgnReader reader = new PgnReader(games(400, false))) {
+                assertThrows(IllegalStateException.class, () -> new PgnReplay(4, 1).replay(reader, (game, position) -> {
+                    throw new IllegalArgumentException("handler failed");
+                }));
+            }
+        });
+    }
+
+    // the games as a stream, a slow one hands out a few bytes per read with a pause before each
+    private static InputStream games(int count, boolean slow) {
+        byte[] bytes = GAME.repeat(count).getBytes(StandardCharsets.US_ASCII);
+        InputStream in = new ByteArrayInputStream(bytes);
+        if (!slow) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+                return super.read(buffer, offset, Math.min(length, 64));
+            }
+        };
+    }
+}